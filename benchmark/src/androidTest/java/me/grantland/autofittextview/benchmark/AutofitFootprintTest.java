@@ -0,0 +1,29 @@
+package me.grantland.autofittextview.benchmark;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fails the build if the helpers measured by {@link AutofitFootprint} retain more than their
+ * budget once they have fitted their text.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AutofitFootprintTest {
+
+    @Test
+    public void fittedHelpersStayWithinBudget() {
+        final AutofitFootprint.Result[] result = new AutofitFootprint.Result[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = AutofitFootprint.run(InstrumentationRegistry.getTargetContext());
+            }
+        });
+        assertTrue(result[0].toString(), result[0].isPassed());
+    }
+}
@@ -0,0 +1,40 @@
+package me.grantland.autofittextview.benchmark;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Fails the build if any of the {@link AutofitScenarios} exceeds its budget.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AutofitScenariosTest {
+
+    @Test
+    public void scenariosStayWithinBudget() {
+        final List<AutofitScenarios.Result> results = new ArrayList<AutofitScenarios.Result>();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                results.addAll(AutofitScenarios.run(InstrumentationRegistry.getTargetContext()));
+            }
+        });
+
+        StringBuilder failures = new StringBuilder();
+        for (AutofitScenarios.Result result : results) {
+            if (!result.isPassed()) {
+                failures.append('\n').append(result);
+            }
+        }
+        if (failures.length() > 0) {
+            fail("Scenarios over budget:" + failures);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package me.grantland.autofittextview.benchmark;
+
+import android.os.Debug;
+
+/**
+ * Counts what the calling thread allocates between {@link #start()} and {@link #stop()}.
+ */
+abstract class AllocationCounter {
+
+    /**
+     * Counts objects with Debug's allocation counting, which is only available on a device.
+     */
+    static final AllocationCounter OBJECTS = new DebugAllocationCounter();
+
+    /**
+     * Starts counting from zero.
+     */
+    abstract void start();
+
+    /**
+     * Stops counting, and returns what was allocated since {@link #start()}.
+     */
+    abstract long stop();
+
+    /**
+     * Returns the unit of the counts, such as "allocs".
+     */
+    abstract String getUnit();
+
+    /**
+     * Debug's allocation counting is deprecated, but it is the only per-thread count the platform
+     * offers, so it is kept here rather than spread across the benchmarks.
+     */
+    @SuppressWarnings("deprecation")
+    private static class DebugAllocationCounter extends AllocationCounter {
+        @Override
+        void start() {
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+        }
+
+        @Override
+        long stop() {
+            Debug.stopAllocCounting();
+            return Debug.getThreadAllocCount();
+        }
+
+        @Override
+        String getUnit() {
+            return "allocs";
+        }
+    }
+}
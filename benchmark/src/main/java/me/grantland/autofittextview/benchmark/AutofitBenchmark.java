@@ -0,0 +1,225 @@
+package me.grantland.autofittextview.benchmark;
+
+import android.content.res.Resources;
+import android.graphics.Paint;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.util.DisplayMetrics;
+
+import java.util.Locale;
+
+import me.grantland.widget.AutofitEngine;
+import me.grantland.widget.AutofitPrefetcher;
+
+/**
+ * Benchmarks the search that fits text to its bounds, without any View around it, across text
+ * lengths, line counts, precisions and widths, and for more than one line, across the break
+ * strategies the search probes with. The text is laid out with
+ * {@link Layout#BREAK_STRATEGY_HIGH_QUALITY} and {@link Layout#HYPHENATION_FREQUENCY_NORMAL}, the
+ * defaults of a TextView on android-23+.
+ *
+ * <p>Fits go through {@link AutofitEngine}, the library's public entry point to the search, so
+ * the allocations per fit include its {@link AutofitEngine.Result}. On a device, each scenario is
+ * timed. {@code AutofitBenchmarkTest} runs the same scenarios on the JVM, untimed, where the text
+ * is measured with stand-in metrics and only the probes and allocations per fit are meaningful.
+ * </p>
+ */
+public final class AutofitBenchmark {
+
+    private static final int[] TEXT_LENGTHS = { 8, 32, 128, 512 };
+    private static final int[] MAX_LINES = { 1, 2, 4 };
+    private static final float[] PRECISIONS = { 0.05f, 0.5f, 2f };
+    private static final int[] WIDTHS = { 160, 480, 1080 };
+    // Pairs of probe break strategy and hyphenation frequency
+    private static final int[][] PROBE_BREAK_STRATEGIES = {
+            { Layout.BREAK_STRATEGY_SIMPLE, Layout.HYPHENATION_FREQUENCY_NONE },
+            { Layout.BREAK_STRATEGY_BALANCED, Layout.HYPHENATION_FREQUENCY_NONE },
+            { Layout.BREAK_STRATEGY_HIGH_QUALITY, Layout.HYPHENATION_FREQUENCY_NORMAL },
+    };
+    private static final String[] PROBE_BREAK_STRATEGY_NAMES = {
+            "simple", "balanced", "high_quality+hyphens",
+    };
+
+    private static final float MIN_TEXT_SIZE = 8;
+    private static final float MAX_TEXT_SIZE = 96;
+
+    private static final long WARMUP_NANOS = 50 * 1000 * 1000;
+    private static final long RUN_NANOS = 200 * 1000 * 1000;
+    // Fits between two checks of the clock
+    private static final int BATCH_SIZE = 16;
+    // Fits per scenario when untimed
+    private static final int UNTIMED_FIT_COUNT = 4 * BATCH_SIZE;
+
+    private static final String WORDS = "Lorem ipsum dolor sit amet, consectetur adipiscing "
+            + "elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua. ";
+
+    private AutofitBenchmark() {
+        // Uninstantiable
+    }
+
+    /**
+     * Runs every scenario on the calling thread, notifying {@code listener} of each result as
+     * soon as it is available.
+     */
+    public static void run(Listener listener) {
+        run(listener, AllocationCounter.OBJECTS, true);
+    }
+
+    /**
+     * Runs every scenario on the calling thread, counting allocations with
+     * {@code allocationCounter}, for {@code RUN_NANOS} each if {@code timed} or else for
+     * {@code UNTIMED_FIT_COUNT} fits.
+     */
+    static void run(Listener listener, AllocationCounter allocationCounter, boolean timed) {
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        for (int length : TEXT_LENGTHS) {
+            String text = createText(length);
+            for (int maxLines : MAX_LINES) {
+                for (float precision : PRECISIONS) {
+                    for (int width : WIDTHS) {
+                        // The break strategy doesn't matter for a single line.
+                        int strategyCount = maxLines > 1 ? PROBE_BREAK_STRATEGIES.length : 1;
+                        for (int i = 0; i < strategyCount; i++) {
+                            AutofitPrefetcher.Request request = new AutofitPrefetcher.Request(
+                                    text, paint, width, maxLines, MIN_TEXT_SIZE, MAX_TEXT_SIZE)
+                                    .setPrecision(precision)
+                                    .setBreakStrategy(Layout.BREAK_STRATEGY_HIGH_QUALITY,
+                                            Layout.HYPHENATION_FREQUENCY_NORMAL)
+                                    .setProbeBreakStrategy(PROBE_BREAK_STRATEGIES[i][0],
+                                            PROBE_BREAK_STRATEGIES[i][1]);
+
+                            String name = "length=" + length + " maxLines=" + maxLines
+                                    + " precision=" + precision + " width=" + width;
+                            if (maxLines > 1) {
+                                name += " probe=" + PROBE_BREAK_STRATEGY_NAMES[i];
+                            }
+                            listener.onResult(
+                                    measure(name, request, allocationCounter, timed));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Repeatedly fits {@code request} after a warm up, and returns the throughput if
+     * {@code timed}, and the allocations and probes per fit.
+     */
+    static Result measure(String name, AutofitPrefetcher.Request request,
+            AllocationCounter allocationCounter, boolean timed) {
+        DisplayMetrics displayMetrics = Resources.getSystem().getDisplayMetrics();
+        float size = 0;
+
+        long end = System.nanoTime() + WARMUP_NANOS;
+        int warmupCount = 0;
+        while (timed ? System.nanoTime() < end : warmupCount++ < BATCH_SIZE) {
+            size = AutofitEngine.fit(request, displayMetrics).getTextSize();
+        }
+
+        long probeCount = 0;
+        allocationCounter.start();
+        int fitCount = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                probeCount += AutofitEngine.fit(request, displayMetrics).getProbeCount();
+            }
+            fitCount += BATCH_SIZE;
+            elapsed = System.nanoTime() - start;
+        } while (timed ? elapsed < RUN_NANOS : fitCount < UNTIMED_FIT_COUNT);
+        long allocationCount = allocationCounter.stop();
+
+        return new Result(name, size,
+                timed ? fitCount * 1e9 / elapsed : Double.NaN,
+                (double) allocationCount / fitCount, allocationCounter.getUnit(),
+                (double) probeCount / fitCount);
+    }
+
+    /**
+     * Returns {@code length} characters of words separated by spaces.
+     */
+    static String createText(int length) {
+        StringBuilder builder = new StringBuilder(length + WORDS.length());
+        while (builder.length() < length) {
+            builder.append(WORDS);
+        }
+        builder.setLength(length);
+        return builder.toString();
+    }
+
+    /**
+     * The result of a single scenario.
+     */
+    public static class Result {
+        private final String mName;
+        private final float mTextSize;
+        private final double mOpsPerSecond;
+        private final double mAllocationsPerFit;
+        private final String mAllocationUnit;
+        private final double mProbesPerFit;
+
+        Result(String name, float textSize, double opsPerSecond, double allocationsPerFit,
+                String allocationUnit, double probesPerFit) {
+            mName = name;
+            mTextSize = textSize;
+            mOpsPerSecond = opsPerSecond;
+            mAllocationsPerFit = allocationsPerFit;
+            mAllocationUnit = allocationUnit;
+            mProbesPerFit = probesPerFit;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * Returns the text size the scenario fits at, in pixels.
+         */
+        public float getTextSize() {
+            return mTextSize;
+        }
+
+        /**
+         * Returns the fits per second, or {@link Double#NaN} if the scenario wasn't timed.
+         */
+        public double getOpsPerSecond() {
+            return mOpsPerSecond;
+        }
+
+        /**
+         * Returns what each fit allocates, in {@link #getAllocationUnit()}.
+         */
+        public double getAllocationsPerFit() {
+            return mAllocationsPerFit;
+        }
+
+        /**
+         * Returns the unit of {@link #getAllocationsPerFit()}: objects on a device, and bytes on
+         * the JVM.
+         */
+        public String getAllocationUnit() {
+            return mAllocationUnit;
+        }
+
+        public double getProbesPerFit() {
+            return mProbesPerFit;
+        }
+
+        @Override
+        public String toString() {
+            String ops = Double.isNaN(mOpsPerSecond) ? ""
+                    : String.format(Locale.US, " %.0f ops/s,", mOpsPerSecond);
+            return String.format(Locale.US, "%s:%s %.2f %s/fit, %.2f probes/fit, size=%.2f",
+                    mName, ops, mAllocationsPerFit, mAllocationUnit, mProbesPerFit, mTextSize);
+        }
+    }
+
+    /**
+     * Notified of the result of each scenario as it completes.
+     */
+    public interface Listener {
+        public void onResult(Result result);
+    }
+}
@@ -0,0 +1,131 @@
+package me.grantland.autofittextview.benchmark;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.TextView;
+
+import java.util.Locale;
+
+import me.grantland.widget.AutofitHelper;
+import me.grantland.widget.AutofitMetrics;
+
+/**
+ * Measures the heap retained by each enabled {@link AutofitHelper} once it has fitted its text,
+ * by laying out many TextViews, measuring the heap in use before and after creating helpers for
+ * them and laying them out again, and checks it against a budget. Only the Java heap is counted,
+ * so native memory, such as that behind a {@link android.graphics.Paint}, isn't.
+ *
+ * <p>The budget is checked by {@code AutofitFootprintTest} with {@code connectedCheck}.</p>
+ */
+final class AutofitFootprint {
+
+    private static final int HELPER_COUNT = 1000;
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 48;
+    // Wider than WIDTH at the default text size, so every helper searches for a smaller one
+    private static final String TEXT = "Lorem ipsum dolor sit amet";
+
+    // Budget: the helper, its metrics and its listeners
+    private static final int MAX_BYTES_PER_HELPER = 512;
+
+    private AutofitFootprint() {
+        // Uninstantiable
+    }
+
+    /**
+     * Measures the retained size per helper. Must be called on the main thread.
+     */
+    static Result run(Context context) {
+        TextView[] views = new TextView[HELPER_COUNT];
+        for (int i = 0; i < HELPER_COUNT; i++) {
+            views[i] = createTextView(context);
+        }
+        // The first helper creates the state shared by all of them.
+        AutofitHelper.create(createTextView(context));
+
+        AutofitHelper.OnAutofitListener previousListener =
+                AutofitHelper.getGlobalOnAutofitListener();
+        FitCounter counter = new FitCounter();
+        AutofitHelper.setGlobalOnAutofitListener(counter);
+
+        AutofitHelper[] helpers = new AutofitHelper[HELPER_COUNT];
+        long before = getUsedMemory();
+        for (int i = 0; i < HELPER_COUNT; i++) {
+            helpers[i] = AutofitHelper.create(views[i]);
+            layout(views[i]);
+        }
+        long after = getUsedMemory();
+
+        AutofitHelper.setGlobalOnAutofitListener(previousListener);
+        return new Result(helpers.length, counter.mFitCount, before, after);
+    }
+
+    private static TextView createTextView(Context context) {
+        TextView view = new TextView(context);
+        view.setMaxLines(1);
+        view.setText(TEXT);
+        layout(view);
+        return view;
+    }
+
+    private static void layout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            runtime.gc();
+            runtime.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static class FitCounter implements AutofitHelper.OnAutofitListener {
+        int mFitCount;
+
+        @Override
+        public void onAutofit(AutofitHelper helper, AutofitMetrics metrics) {
+            mFitCount++;
+        }
+    }
+
+    /**
+     * The heap retained per helper, and whether it was within budget.
+     */
+    static class Result {
+        private final int mHelperCount;
+        private final int mFitCount;
+        private final long mBytesBefore;
+        private final long mBytesAfter;
+
+        Result(int helperCount, int fitCount, long bytesBefore, long bytesAfter) {
+            mHelperCount = helperCount;
+            mFitCount = fitCount;
+            mBytesBefore = bytesBefore;
+            mBytesAfter = bytesAfter;
+        }
+
+        long getBytesPerHelper() {
+            return (mBytesAfter - mBytesBefore) / mHelperCount;
+        }
+
+        /**
+         * Returns whether every helper fitted its text, and retained no more than the budget.
+         */
+        boolean isPassed() {
+            return mFitCount >= mHelperCount && getBytesPerHelper() <= MAX_BYTES_PER_HELPER;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s Retained heap: %d bytes before and %d bytes after %d helpers fitted %d "
+                            + "times, %d/%d bytes/helper",
+                    isPassed() ? "PASS" : "FAIL", mBytesBefore, mBytesAfter, mHelperCount,
+                    mFitCount, getBytesPerHelper(), MAX_BYTES_PER_HELPER);
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package me.grantland.autofittextview.benchmark;
+
+import android.content.Context;
+import android.os.Build;
+import android.text.Editable;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.view.View;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import me.grantland.widget.AutofitHelper;
+import me.grantland.widget.AutofitLayout;
+import me.grantland.widget.AutofitMetrics;
+import me.grantland.widget.AutofitTextView;
+
+/**
+ * Drives {@link AutofitTextView}, {@link AutofitLayout} and {@link AutofitHelper}-wrapped views
+ * through realistic sequences of changes, and checks that the fits they trigger stay within
+ * budget: at least one fit and no more fits than triggers, a bounded number of probes per fit and
+ * a bounded number of objects allocated per fit. A change that re-introduces redundant fits or
+ * allocations per probe makes a scenario fail, and so does one that stops it from fitting at all.
+ *
+ * <p>Views are laid out by hand rather than attached to a window, so that every fit happens
+ * synchronously in response to its trigger. Allocations made by the views themselves are
+ * measured by running every scenario once more with autofitting disabled, and subtracted. Fits
+ * that verify their size with a {@link StaticLayout}, such as those of text with more than one
+ * line, may also allocate what building a StaticLayout allocates on the device, measured
+ * beforehand.</p>
+ *
+ * <p>The scenarios are run by {@code AutofitScenariosTest} with {@code connectedCheck}, and by
+ * {@code AutofitScenariosJvmTest} on the JVM with Robolectric, where allocations can't be counted
+ * in objects and only the fits and probes are checked.</p>
+ */
+final class AutofitScenarios {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 200;
+    private static final int TRIGGER_COUNT = 100;
+
+    // Budgets
+    private static final int MAX_PROBES_PER_FIT = 8;
+    private static final int MAX_TYPING_PROBES_PER_FIT = 4;
+    // Beyond what the StaticLayouts a fit builds allocate
+    private static final int MAX_ALLOCATIONS_PER_FIT = 8;
+
+    private static final String[] TEXTS = {
+            "Lorem ipsum",
+            "Lorem ipsum dolor sit amet",
+            "Lorem ipsum dolor sit amet, consectetur adipiscing elit",
+            "Sed do eiusmod tempor incididunt ut labore et dolore magna aliqua. Ut enim ad minim",
+            "Veniam",
+    };
+
+    private AutofitScenarios() {
+        // Uninstantiable
+    }
+
+    /**
+     * Runs every scenario and returns their results. Must be called on the main thread.
+     */
+    static List<Result> run(Context context) {
+        return run(context, true);
+    }
+
+    /**
+     * Runs every scenario and returns their results, checking the allocations per fit only if
+     * {@code countAllocations}. Must be called on the main thread.
+     */
+    static List<Result> run(Context context, boolean countAllocations) {
+        List<Scenario> scenarios = new ArrayList<Scenario>();
+        scenarios.add(new SetTextBurst());
+        scenarios.add(new WidthAnimation());
+        scenarios.add(new MaxLinesChanges());
+        scenarios.add(new Typing());
+        scenarios.add(new LayoutSetTextBurst());
+        scenarios.add(new NestedLayoutSetTextBurst());
+
+        float layoutAllocations = countAllocations ? countLayoutAllocations() : 0;
+        List<Result> results = new ArrayList<Result>();
+        for (Scenario scenario : scenarios) {
+            results.add(run(context, scenario, countAllocations, layoutAllocations));
+        }
+        return results;
+    }
+
+    /**
+     * Returns the number of objects building a {@link StaticLayout} allocates, the way the helper
+     * builds one to measure text, which depends on the platform rather than on the helper.
+     */
+    private static float countLayoutAllocations() {
+        TextPaint paint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(32);
+        String text = TEXTS[3];
+        // Warm up any pools first.
+        buildLayout(text, paint);
+
+        AllocationCounter.OBJECTS.start();
+        for (int i = 0; i < TRIGGER_COUNT; i++) {
+            buildLayout(text, paint);
+        }
+        return (float) AllocationCounter.OBJECTS.stop() / TRIGGER_COUNT;
+    }
+
+    private static Layout buildLayout(String text, TextPaint paint) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            // StaticLayout.Builder is only available on android-23+
+            return StaticLayout.Builder.obtain(text, 0, text.length(), paint, WIDTH).build();
+        }
+        return new StaticLayout(text, paint, WIDTH, Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f,
+                true);
+    }
+
+    private static Result run(Context context, Scenario scenario, boolean countAllocations,
+            float layoutAllocations) {
+        if (!countAllocations) {
+            scenario.setUp(context);
+            FitCounter counter = new FitCounter();
+            for (AutofitHelper helper : scenario.getHelpers()) {
+                helper.addOnAutofitListener(counter);
+            }
+            for (int i = 0; i < TRIGGER_COUNT; i++) {
+                scenario.trigger(i);
+            }
+            return new Result(scenario, counter, -1, 0);
+        }
+
+        // Baseline of what the views themselves allocate for the same triggers.
+        scenario.setUp(context);
+        for (AutofitHelper helper : scenario.getHelpers()) {
+            helper.setEnabled(false);
+        }
+        int baselineAllocations = countAllocations(scenario);
+
+        scenario.setUp(context);
+        FitCounter counter = new FitCounter();
+        for (AutofitHelper helper : scenario.getHelpers()) {
+            helper.addOnAutofitListener(counter);
+        }
+        int allocations = countAllocations(scenario);
+
+        return new Result(scenario, counter, Math.max(0, allocations - baselineAllocations),
+                layoutAllocations);
+    }
+
+    private static int countAllocations(Scenario scenario) {
+        AllocationCounter.OBJECTS.start();
+        for (int i = 0; i < TRIGGER_COUNT; i++) {
+            scenario.trigger(i);
+        }
+        return (int) AllocationCounter.OBJECTS.stop();
+    }
+
+    private static void layout(View view, int width, int height) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, width, height);
+    }
+
+    /**
+     * A sequence of changes to one or more views.
+     */
+    private abstract static class Scenario {
+        final String mName;
+
+        Scenario(String name) {
+            mName = name;
+        }
+
+        /**
+         * Creates and lays out the views, replacing those of any previous call.
+         */
+        abstract void setUp(Context context);
+
+        abstract List<AutofitHelper> getHelpers();
+
+        /**
+         * Makes the {@code i}th change.
+         */
+        abstract void trigger(int i);
+
+        /**
+         * Returns the most fits that {@code TRIGGER_COUNT} changes may cost.
+         */
+        int getMaxFits() {
+            return TRIGGER_COUNT;
+        }
+
+        int getMaxProbesPerFit() {
+            return MAX_PROBES_PER_FIT;
+        }
+    }
+
+    private static class SetTextBurst extends Scenario {
+        private AutofitTextView mView;
+
+        SetTextBurst() {
+            super("setText burst (AutofitTextView)");
+        }
+
+        @Override
+        void setUp(Context context) {
+            mView = new AutofitTextView(context);
+            mView.setMaxLines(2);
+            layout(mView, WIDTH, HEIGHT);
+        }
+
+        @Override
+        List<AutofitHelper> getHelpers() {
+            return Collections.singletonList(mView.getAutofitHelper());
+        }
+
+        @Override
+        void trigger(int i) {
+            mView.setText(TEXTS[i % TEXTS.length]);
+        }
+    }
+
+    private static class WidthAnimation extends Scenario {
+        private TextView mView;
+        private AutofitHelper mHelper;
+
+        WidthAnimation() {
+            super("width animation (TextView)");
+        }
+
+        @Override
+        void setUp(Context context) {
+            mView = new TextView(context);
+            mView.setSingleLine();
+            mView.setText(TEXTS[2]);
+            mHelper = AutofitHelper.create(mView);
+            layout(mView, WIDTH, HEIGHT);
+        }
+
+        @Override
+        List<AutofitHelper> getHelpers() {
+            return Collections.singletonList(mHelper);
+        }
+
+        @Override
+        void trigger(int i) {
+            // Every other frame only changes the height, which doesn't need a fit.
+            int width = 200 + 4 * (i / 2);
+            int height = i % 2 == 0 ? HEIGHT : HEIGHT + 20;
+            layout(mView, width, height);
+        }
+
+        @Override
+        int getMaxFits() {
+            return (TRIGGER_COUNT + 1) / 2;
+        }
+    }
+
+    private static class MaxLinesChanges extends Scenario {
+        private AutofitTextView mView;
+
+        MaxLinesChanges() {
+            super("maxLines changes (AutofitTextView)");
+        }
+
+        @Override
+        void setUp(Context context) {
+            mView = new AutofitTextView(context);
+            mView.setText(TEXTS[3]);
+            mView.setMaxLines(1);
+            layout(mView, WIDTH, HEIGHT);
+        }
+
+        @Override
+        List<AutofitHelper> getHelpers() {
+            return Collections.singletonList(mView.getAutofitHelper());
+        }
+
+        @Override
+        void trigger(int i) {
+            mView.setMaxLines(2 + i % 3);
+        }
+    }
+
+    private static class Typing extends Scenario {
+        private EditText mView;
+        private AutofitHelper mHelper;
+
+        Typing() {
+            super("typing (EditText)");
+        }
+
+        @Override
+        void setUp(Context context) {
+            mView = new EditText(context);
+            mView.setSingleLine();
+            mHelper = AutofitHelper.create(mView);
+            layout(mView, WIDTH, HEIGHT);
+        }
+
+        @Override
+        List<AutofitHelper> getHelpers() {
+            return Collections.singletonList(mHelper);
+        }
+
+        @Override
+        void trigger(int i) {
+            // Type digits for the first half, then delete them again.
+            Editable text = mView.getText();
+            if (i < TRIGGER_COUNT / 2) {
+                text.append((char) ('0' + i % 10));
+            } else {
+                text.delete(text.length() - 1, text.length());
+            }
+        }
+
+        @Override
+        int getMaxProbesPerFit() {
+            return MAX_TYPING_PROBES_PER_FIT;
+        }
+    }
+
+    private static class LayoutSetTextBurst extends Scenario {
+        private static final int CHILD_COUNT = 3;
+
+        private AutofitLayout mLayout;
+        private final TextView[] mChildren = new TextView[CHILD_COUNT];
+
+        LayoutSetTextBurst() {
+            super("setText burst (AutofitLayout)");
+        }
+
+        @Override
+        void setUp(Context context) {
+            mLayout = new AutofitLayout(context);
+            for (int i = 0; i < CHILD_COUNT; i++) {
+                mChildren[i] = new TextView(context);
+                mChildren[i].setSingleLine();
+                mLayout.addView(mChildren[i]);
+            }
+            layout(mLayout, WIDTH, HEIGHT);
+        }
+
+        @Override
+        List<AutofitHelper> getHelpers() {
+            List<AutofitHelper> helpers = new ArrayList<AutofitHelper>();
+            for (int i = 0; i < CHILD_COUNT; i++) {
+                helpers.add(mLayout.getAutofitHelper(i));
+            }
+            return helpers;
+        }
+
+        @Override
+        void trigger(int i) {
+            mChildren[i % CHILD_COUNT].setText(TEXTS[i % TEXTS.length]);
+        }
+    }
+
+    private static class NestedLayoutSetTextBurst extends Scenario {
+        private static final int ROW_COUNT = 4;
+        private static final int ICON_SIZE = 48;
+
+        private AutofitLayout mLayout;
+        private final TextView[] mLabels = new TextView[ROW_COUNT];
+
+        NestedLayoutSetTextBurst() {
+            super("setText burst (nested AutofitLayout)");
+        }
+
+        @Override
+        void setUp(Context context) {
+            // Rows of a label taking up the rest of the row, a View that isn't a TextView and a
+            // label that is never shown.
+            mLayout = new AutofitLayout(context);
+            LinearLayout column = new LinearLayout(context);
+            column.setOrientation(LinearLayout.VERTICAL);
+            for (int i = 0; i < ROW_COUNT; i++) {
+                LinearLayout row = new LinearLayout(context);
+                mLabels[i] = new TextView(context);
+                mLabels[i].setSingleLine();
+                row.addView(mLabels[i], new LinearLayout.LayoutParams(0,
+                        LinearLayout.LayoutParams.WRAP_CONTENT, 1));
+                row.addView(new View(context), new LinearLayout.LayoutParams(ICON_SIZE,
+                        ICON_SIZE));
+                TextView hidden = new TextView(context);
+                hidden.setVisibility(View.GONE);
+                row.addView(hidden);
+                column.addView(row);
+            }
+            mLayout.addView(column);
+            layout(mLayout, WIDTH, HEIGHT);
+        }
+
+        @Override
+        List<AutofitHelper> getHelpers() {
+            List<AutofitHelper> helpers = new ArrayList<AutofitHelper>();
+            for (int i = 0; i < ROW_COUNT; i++) {
+                helpers.add(mLayout.getAutofitHelper(mLabels[i]));
+            }
+            return helpers;
+        }
+
+        @Override
+        void trigger(int i) {
+            mLabels[i % ROW_COUNT].setText(TEXTS[i % TEXTS.length]);
+            // The layout passes the layout changes of the labels on to their helpers.
+            layout(mLayout, WIDTH, HEIGHT);
+        }
+    }
+
+    private static class FitCounter implements AutofitHelper.OnAutofitListener {
+        int mFitCount;
+        int mProbeCount;
+        int mMaxProbeCount;
+        int mLayoutCount;
+
+        @Override
+        public void onAutofit(AutofitHelper helper, AutofitMetrics metrics) {
+            mFitCount++;
+            mProbeCount += metrics.getProbeCount();
+            mLayoutCount += metrics.getLayoutCount();
+            mMaxProbeCount = Math.max(mMaxProbeCount, metrics.getProbeCount());
+        }
+    }
+
+    /**
+     * The fits a scenario cost, and whether they were within budget.
+     */
+    static class Result {
+        private final String mName;
+        private final int mFitCount;
+        private final int mMaxFitCount;
+        private final float mProbesPerFit;
+        private final int mMaxProbeCount;
+        private final int mMaxProbesPerFit;
+        // -1 if allocations weren't counted
+        private final float mAllocationsPerFit;
+        private final float mMaxAllocationsPerFit;
+
+        Result(Scenario scenario, FitCounter counter, int allocations, float layoutAllocations) {
+            // Only to avoid dividing by zero; a scenario without fits fails.
+            int fits = Math.max(1, counter.mFitCount);
+            mName = scenario.mName;
+            mFitCount = counter.mFitCount;
+            mMaxFitCount = scenario.getMaxFits();
+            mProbesPerFit = (float) counter.mProbeCount / fits;
+            mMaxProbeCount = counter.mMaxProbeCount;
+            mMaxProbesPerFit = scenario.getMaxProbesPerFit();
+            mAllocationsPerFit = allocations >= 0 ? (float) allocations / fits : -1;
+            mMaxAllocationsPerFit = MAX_ALLOCATIONS_PER_FIT
+                    + layoutAllocations * counter.mLayoutCount / fits;
+        }
+
+        boolean isPassed() {
+            return mFitCount > 0 && mFitCount <= mMaxFitCount
+                    && mMaxProbeCount <= mMaxProbesPerFit
+                    && mAllocationsPerFit <= mMaxAllocationsPerFit;
+        }
+
+        @Override
+        public String toString() {
+            String allocations = mAllocationsPerFit < 0 ? "allocs not counted"
+                    : String.format(Locale.US, "%.2f/%.2f allocs/fit", mAllocationsPerFit,
+                            mMaxAllocationsPerFit);
+            return String.format(Locale.US,
+                    "%s %s: %d/%d fits for %d triggers, %.2f probes/fit (max %d/%d), %s",
+                    isPassed() ? "PASS" : "FAIL", mName, mFitCount, mMaxFitCount,
+                    TRIGGER_COUNT, mProbesPerFit, mMaxProbeCount, mMaxProbesPerFit,
+                    allocations);
+        }
+    }
+}
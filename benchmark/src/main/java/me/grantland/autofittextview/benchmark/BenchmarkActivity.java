@@ -0,0 +1,74 @@
+package me.grantland.autofittextview.benchmark;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+/**
+ * Runs the {@link AutofitScenarios} budget checks and {@link AutofitFootprint}, then
+ * {@link AutofitBenchmark} in the background, and lists the results as they come in. The results
+ * are also logged, so they can be collected with {@code adb logcat -s AutofitBenchmark}; failed
+ * budget checks are logged as errors.
+ */
+public class BenchmarkActivity extends Activity {
+
+    private static final String TAG = "AutofitBenchmark";
+
+    private TextView mOutput;
+    private Thread mThread;
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        mOutput = new TextView(this);
+        ScrollView scrollView = new ScrollView(this);
+        scrollView.addView(mOutput);
+        setContentView(scrollView);
+
+        int failedCount = 0;
+        for (AutofitScenarios.Result result : AutofitScenarios.run(this)) {
+            String line = result.toString();
+            if (result.isPassed()) {
+                Log.i(TAG, line);
+            } else {
+                Log.e(TAG, line);
+                failedCount++;
+            }
+            mOutput.append(line + "\n");
+        }
+        Log.i(TAG, "Scenarios finished, " + failedCount + " failed");
+
+        AutofitFootprint.Result footprint = AutofitFootprint.run(this);
+        if (footprint.isPassed()) {
+            Log.i(TAG, footprint.toString());
+        } else {
+            Log.e(TAG, footprint.toString());
+        }
+        mOutput.append(footprint + "\n");
+
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Log.i(TAG, "Started");
+                AutofitBenchmark.run(new AutofitBenchmark.Listener() {
+                    @Override
+                    public void onResult(AutofitBenchmark.Result result) {
+                        final String line = result.toString();
+                        Log.i(TAG, line);
+                        runOnUiThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                mOutput.append(line + "\n");
+                            }
+                        });
+                    }
+                });
+                Log.i(TAG, "Finished");
+            }
+        }, TAG);
+        mThread.start();
+    }
+}
@@ -0,0 +1,46 @@
+package me.grantland.autofittextview.benchmark;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the {@link AutofitBenchmark} scenarios on the JVM with stand-in text metrics, and writes
+ * their probes and allocations per fit to {@code build/reports/autofit-benchmark.txt}, to be
+ * compared before and after a change to the search. Throughput is only measured on a device.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, shadows = StandInShadowPaint.class)
+public class AutofitBenchmarkTest {
+
+    private static final File REPORT = new File("build/reports/autofit-benchmark.txt");
+
+    @Test
+    public void reportProbesAndAllocationsPerFit() throws IOException {
+        final StringBuilder report = new StringBuilder();
+        AutofitBenchmark.run(new AutofitBenchmark.Listener() {
+            @Override
+            public void onResult(AutofitBenchmark.Result result) {
+                report.append(result).append('\n');
+            }
+        }, new JvmAllocationCounter(), false);
+        assertTrue(report.length() > 0);
+
+        System.out.print(report);
+        REPORT.getParentFile().mkdirs();
+        Writer writer = new FileWriter(REPORT);
+        try {
+            writer.write(report.toString());
+        } finally {
+            writer.close();
+        }
+    }
+}
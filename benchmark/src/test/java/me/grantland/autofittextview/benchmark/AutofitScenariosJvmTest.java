@@ -0,0 +1,33 @@
+package me.grantland.autofittextview.benchmark;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Fails the build if any of the {@link AutofitScenarios} exceeds its budget of fits per trigger
+ * or probes per fit, on the JVM with stand-in text metrics, so that it doesn't take a device.
+ * Allocations are only checked on a device, by {@code AutofitScenariosTest}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, shadows = StandInShadowPaint.class)
+public class AutofitScenariosJvmTest {
+
+    @Test
+    public void scenariosStayWithinBudget() {
+        StringBuilder failures = new StringBuilder();
+        for (AutofitScenarios.Result result
+                : AutofitScenarios.run(RuntimeEnvironment.application, false)) {
+            if (!result.isPassed()) {
+                failures.append('\n').append(result);
+            }
+        }
+        if (failures.length() > 0) {
+            fail("Scenarios over budget:" + failures);
+        }
+    }
+}
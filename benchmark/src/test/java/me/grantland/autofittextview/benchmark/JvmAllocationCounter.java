@@ -0,0 +1,34 @@
+package me.grantland.autofittextview.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the bytes the calling thread allocates on a HotSpot JVM, where Debug's allocation
+ * counting isn't available. This includes what Robolectric allocates to intercept calls into the
+ * framework, so the counts are only comparable between runs on the JVM.
+ */
+class JvmAllocationCounter extends AllocationCounter {
+
+    private final com.sun.management.ThreadMXBean mThreadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private long mStart;
+
+    @Override
+    void start() {
+        mStart = getAllocatedBytes();
+    }
+
+    @Override
+    long stop() {
+        return getAllocatedBytes() - mStart;
+    }
+
+    @Override
+    String getUnit() {
+        return "bytes";
+    }
+
+    private long getAllocatedBytes() {
+        return mThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
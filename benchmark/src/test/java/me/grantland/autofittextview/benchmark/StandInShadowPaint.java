@@ -0,0 +1,127 @@
+package me.grantland.autofittextview.benchmark;
+
+import android.graphics.Paint;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowPaint;
+
+/**
+ * Measures text with stand-in metrics on the JVM, where Robolectric has no fonts: every character
+ * is {@code ADVANCE} em wide, and the font metrics are fixed fractions of the text size. Both
+ * scale with the text size, as they would with a real monospace font, so fits and layouts behave
+ * as they do on a device, if not at the same sizes.
+ */
+@Implements(Paint.class)
+public class StandInShadowPaint extends ShadowPaint {
+
+    private static final float ADVANCE = 0.5f;
+    private static final float TOP = -1.05f;
+    private static final float ASCENT = -0.93f;
+    private static final float DESCENT = 0.24f;
+    private static final float BOTTOM = 0.27f;
+
+    @Implementation
+    public float measureText(String text) {
+        return measure(text.length());
+    }
+
+    @Implementation
+    public float measureText(String text, int start, int end) {
+        return measure(end - start);
+    }
+
+    @Implementation
+    public float measureText(CharSequence text, int start, int end) {
+        return measure(end - start);
+    }
+
+    @Implementation
+    public float measureText(char[] text, int index, int count) {
+        return measure(count);
+    }
+
+    @Implementation
+    public int getTextWidths(String text, float[] widths) {
+        return getWidths(text.length(), widths, 0);
+    }
+
+    @Implementation
+    public int getTextWidths(String text, int start, int end, float[] widths) {
+        return getWidths(end - start, widths, 0);
+    }
+
+    @Implementation
+    public int getTextWidths(CharSequence text, int start, int end, float[] widths) {
+        return getWidths(end - start, widths, 0);
+    }
+
+    @Implementation
+    public int getTextWidths(char[] text, int index, int count, float[] widths) {
+        return getWidths(count, widths, 0);
+    }
+
+    @Implementation
+    public float getTextRunAdvances(char[] chars, int index, int count, int contextIndex,
+            int contextCount, boolean isRtl, float[] advances, int advancesIndex) {
+        getWidths(count, advances, advancesIndex);
+        return measure(count);
+    }
+
+    @Implementation
+    public float getTextRunAdvances(CharSequence text, int start, int end, int contextStart,
+            int contextEnd, boolean isRtl, float[] advances, int advancesIndex) {
+        getWidths(end - start, advances, advancesIndex);
+        return measure(end - start);
+    }
+
+    @Implementation
+    public float ascent() {
+        return ASCENT * getTextSize();
+    }
+
+    @Implementation
+    public float descent() {
+        return DESCENT * getTextSize();
+    }
+
+    @Implementation
+    public float getFontMetrics(Paint.FontMetrics metrics) {
+        float size = getTextSize();
+        if (metrics != null) {
+            metrics.top = TOP * size;
+            metrics.ascent = ASCENT * size;
+            metrics.descent = DESCENT * size;
+            metrics.bottom = BOTTOM * size;
+            metrics.leading = 0;
+        }
+        return (DESCENT - ASCENT) * size;
+    }
+
+    @Implementation
+    public int getFontMetricsInt(Paint.FontMetricsInt metrics) {
+        float size = getTextSize();
+        if (metrics != null) {
+            metrics.top = (int) Math.floor(TOP * size);
+            metrics.ascent = Math.round(ASCENT * size);
+            metrics.descent = Math.round(DESCENT * size);
+            metrics.bottom = (int) Math.ceil(BOTTOM * size);
+            metrics.leading = 0;
+        }
+        return Math.round(DESCENT * size) - Math.round(ASCENT * size);
+    }
+
+    private float measure(int count) {
+        return count * ADVANCE * getTextSize();
+    }
+
+    private int getWidths(int count, float[] widths, int index) {
+        if (widths != null) {
+            float advance = ADVANCE * getTextSize();
+            for (int i = 0; i < count; i++) {
+                widths[index + i] = advance;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,171 @@
+package me.grantland.widget;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.text.TextPaint;
+import android.util.DisplayMetrics;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the bounds that narrow the search before it starts against a brute-force scan of every
+ * size, and that they save the measurements they are meant to.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AutofitBoundsTest {
+
+    private static final String WORDS = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, "
+            + "sed do eiusmod tempor incididunt ut labore ";
+    private static final String[] TEXTS = {
+            WORDS.substring(0, 40),
+            WORDS,
+            WORDS + WORDS + WORDS,
+            "Short\n" + WORDS,
+            WORDS.substring(0, 30) + "\n" + WORDS.substring(30, 50),
+    };
+    private static final int[] WIDTHS = { 160, 480, 1080 };
+    private static final int[] MAX_LINES = { 1, 2, 3 };
+    private static final float MIN_TEXT_SIZE = 8;
+    private static final float MAX_TEXT_SIZE = 96;
+    private static final float PRECISION = 0.5f;
+    // Step of the brute-force scan
+    private static final float STEP = 0.05f;
+
+    private final DisplayMetrics mDisplayMetrics = new DisplayMetrics();
+
+    public AutofitBoundsTest() {
+        mDisplayMetrics.setToDefaults();
+    }
+
+    @Test
+    public void matchesBruteForceScan() {
+        for (String text : TEXTS) {
+            for (int width : WIDTHS) {
+                for (int maxLines : MAX_LINES) {
+                    AutofitParams params = createParams(width, maxLines);
+                    float size = search(text, new TextPaint(), params, new AutofitMeasurer());
+                    float best = scan(text, params);
+                    String message = text + " at " + size + "px, best " + best + "px, " + width
+                            + "px wide on " + maxLines + " lines";
+                    if (best <= MIN_TEXT_SIZE) {
+                        assertTrue(message, size <= MIN_TEXT_SIZE);
+                    } else {
+                        assertTrue(message, fitsAt(text, params, size));
+                        assertTrue(message, best - size <= PRECISION + STEP);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void moreHardLinesThanMaxLinesReturnMinWithoutMeasuring() {
+        AutofitMeasurer measurer = new AutofitMeasurer();
+        float size = AutofitHelper.computeTextSize("One\nTwo\nThree", new TextPaint(),
+                createParams(480, 2), mDisplayMetrics, measurer);
+        assertEquals(MIN_TEXT_SIZE, size, 0);
+        assertEquals(0, measurer.getMeasureCount());
+    }
+
+    @Test
+    public void upperBoundReturnsMinWithoutSearching() {
+        String text = WORDS + WORDS + WORDS;
+        for (int maxLines = 1; maxLines <= 2; maxLines++) {
+            AutofitMeasurer measurer = new AutofitMeasurer();
+            float size = AutofitHelper.computeTextSize(text, new TextPaint(),
+                    createParams(60, maxLines), mDisplayMetrics, measurer);
+            assertEquals(MIN_TEXT_SIZE, size, 0);
+            // Only the measurement at the maximum size
+            assertEquals(1, measurer.getMeasureCount());
+        }
+    }
+
+    @Test
+    public void lowerBoundIsProbedFirstWithAsManyHardLinesAsMaxLines() {
+        String text = "Short\n" + WORDS;
+        AutofitParams params = createParams(480, 2);
+        RecordingPaint paint = new RecordingPaint();
+        search(text, paint, params, new AutofitMeasurer());
+
+        // The first size is the maximum size, measured before the search.
+        assertTrue(paint.mSizes.size() >= 2);
+        float lower = paint.mSizes.get(1);
+        float best = scan(text, params);
+        assertTrue(lower + " > " + best, lower <= best);
+        assertTrue(lower + " < " + best, lower >= best * 0.97f);
+    }
+
+    private static AutofitParams createParams(int width, int maxLines) {
+        AutofitParams params = new AutofitParams();
+        params.mTargetWidth = width;
+        params.mMaxLines = maxLines;
+        params.mMinTextSize = MIN_TEXT_SIZE;
+        params.mMaxTextSize = MAX_TEXT_SIZE;
+        params.mPrecision = PRECISION;
+        params.mStrategy = AutofitHelper.STRATEGY_SEARCH;
+        return params;
+    }
+
+    /**
+     * Returns the size the search with its bounds finds, without verifying it with a layout.
+     */
+    private float search(String text, TextPaint paint, AutofitParams params,
+            AutofitMeasurer measurer) {
+        measurer.setText(text);
+        paint.setTextSize(MAX_TEXT_SIZE);
+        measurer.measure(paint, params.mTargetWidth, params.mMaxLines);
+        if (fits(measurer, params)) {
+            return MAX_TEXT_SIZE;
+        }
+        if (params.mMaxLines > 1 && measurer.getParagraphCount() > params.mMaxLines) {
+            return MIN_TEXT_SIZE;
+        }
+        return AutofitHelper.getAutofitTextSize(measurer, paint, params, 0, MAX_TEXT_SIZE,
+                mDisplayMetrics);
+    }
+
+    /**
+     * Returns the largest size, in steps of {@code STEP}, that the text fits at.
+     */
+    private static float scan(String text, AutofitParams params) {
+        for (float size = MAX_TEXT_SIZE; size > MIN_TEXT_SIZE; size -= STEP) {
+            if (fitsAt(text, params, size)) {
+                return size;
+            }
+        }
+        return MIN_TEXT_SIZE;
+    }
+
+    private static boolean fitsAt(String text, AutofitParams params, float size) {
+        AutofitMeasurer measurer = new AutofitMeasurer();
+        TextPaint paint = new TextPaint();
+        measurer.setText(text);
+        paint.setTextSize(size);
+        measurer.measure(paint, params.mTargetWidth, params.mMaxLines);
+        return fits(measurer, params);
+    }
+
+    private static boolean fits(AutofitMeasurer measurer, AutofitParams params) {
+        return measurer.getLineCount() <= params.mMaxLines
+                && measurer.getMaxLineWidth() <= params.mTargetWidth;
+    }
+
+    /**
+     * Records every text size it is set to.
+     */
+    private static class RecordingPaint extends TextPaint {
+        final List<Float> mSizes = new ArrayList<Float>();
+
+        @Override
+        public void setTextSize(float textSize) {
+            mSizes.add(textSize);
+            super.setTextSize(textSize);
+        }
+    }
+}
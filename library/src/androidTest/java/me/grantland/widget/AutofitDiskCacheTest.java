@@ -0,0 +1,67 @@
+package me.grantland.widget;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.TextPaint;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class AutofitDiskCacheTest {
+
+    private static final int LABEL_COUNT = 20;
+    // Enough to fill the cache several times over in a single session
+    private static final int FEED_COUNT = AutofitDiskCache.MAX_ENTRIES * 3;
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final TextPaint mPaint = new TextPaint();
+    private final AutofitParams mParams = new AutofitParams();
+    private final AutofitCache.Key mKey = new AutofitCache.Key();
+
+    @Test
+    public void sizesShownEverySessionOutlastLongScrolls() {
+        mParams.mTargetWidth = 320;
+        mParams.mMaxLines = 1;
+        File file = new File(InstrumentationRegistry.getTargetContext().getCacheDir(),
+                "autofit_disk_cache_test.bin");
+        file.delete();
+
+        AutofitDiskCache cache = new AutofitDiskCache(file, 1, DIRECT_EXECUTOR);
+        cache.load();
+        for (int i = 0; i < LABEL_COUNT; i++) {
+            cache.put(key("label " + i), i);
+        }
+        cache.save();
+
+        for (int session = 2; session <= 4; session++) {
+            cache = new AutofitDiskCache(file, 1, DIRECT_EXECUTOR);
+            cache.load();
+            for (int i = 0; i < LABEL_COUNT; i++) {
+                assertEquals("session " + session, i, cache.get(key("label " + i)), 0);
+            }
+            for (int i = 0; i < FEED_COUNT; i++) {
+                cache.put(key("feed " + session + " " + i), 1);
+            }
+            assertTrue(cache.size() <= AutofitDiskCache.MAX_ENTRIES);
+            cache.save();
+        }
+        file.delete();
+    }
+
+    private AutofitCache.Key key(String text) {
+        return mKey.set(text, mPaint, mParams);
+    }
+}
@@ -0,0 +1,166 @@
+package me.grantland.widget;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.view.View;
+import android.widget.TextView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class AutofitEngineTest {
+
+    private static final String[] TEXTS = {
+            "Lorem ipsum",
+            "The quick brown fox jumps over the lazy dog",
+            "Sed do eiusmod tempor incididunt ut labore et dolore magna aliqua. Ut enim ad minim",
+    };
+    private static final int[] WIDTHS = { 120, 320, 720 };
+    private static final int[] MAX_LINES = { 1, 2, 3 };
+    private static final float MIN_TEXT_SIZE = 8;
+    private static final float MAX_TEXT_SIZE = 96;
+    private static final int HEIGHT = 400;
+    // Helpers don't apply sizes this close to the current one.
+    private static final float TEXT_SIZE_TOLERANCE = 0.05f;
+
+    private final TextPaint mPaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullTextIsRejected() {
+        fit(null, 100, 1, MIN_TEXT_SIZE, MAX_TEXT_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullPaintIsRejected() {
+        AutofitEngine.fit("text", null, 100, 1, MIN_TEXT_SIZE, MAX_TEXT_SIZE,
+                AutofitEngine.DEFAULT_PRECISION, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroWidthIsRejected() {
+        fit("text", 0, 1, MIN_TEXT_SIZE, MAX_TEXT_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroMaxLinesIsRejected() {
+        fit("text", 100, 0, MIN_TEXT_SIZE, MAX_TEXT_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void minAboveMaxIsRejected() {
+        fit("text", 100, 1, MAX_TEXT_SIZE, MIN_TEXT_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullRequestIsRejected() {
+        AutofitEngine.fit(null, null);
+    }
+
+    @Test
+    public void resultFitsStaticLayout() {
+        for (String text : TEXTS) {
+            for (int width : WIDTHS) {
+                for (int maxLines : MAX_LINES) {
+                    float size = fit(text, width, maxLines, MIN_TEXT_SIZE, MAX_TEXT_SIZE)
+                            .getTextSize();
+                    String message = text + " at " + size + "px, " + width + "px wide";
+                    assertTrue(message, size >= MIN_TEXT_SIZE && size <= MAX_TEXT_SIZE);
+                    if (size == MIN_TEXT_SIZE) {
+                        continue;
+                    }
+
+                    TextPaint paint = new TextPaint(mPaint);
+                    paint.setTextSize(size);
+                    StaticLayout layout = new StaticLayout(text, paint, width,
+                            Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, true);
+                    assertTrue(message, layout.getLineCount() <= maxLines);
+                    if (maxLines == 1) {
+                        assertTrue(message, layout.getLineWidth(0) <= width);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void returnsMinTextSizeWhenNothingFits() {
+        AutofitEngine.Result result = fit("Pneumonoultramicroscopicsilicovolcanoconiosis", 40, 1,
+                MIN_TEXT_SIZE, MAX_TEXT_SIZE);
+        assertEquals(MIN_TEXT_SIZE, result.getTextSize(), 0);
+    }
+
+    @Test
+    public void requestMatchesHelperFit() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (String text : TEXTS) {
+                    for (int width : WIDTHS) {
+                        TextView view = new TextView(InstrumentationRegistry.getTargetContext());
+                        view.setMaxLines(2);
+                        AutofitHelper helper = AutofitHelper.create(view);
+                        view.setText(text);
+                        view.measure(View.MeasureSpec.makeMeasureSpec(width,
+                                        View.MeasureSpec.EXACTLY),
+                                View.MeasureSpec.makeMeasureSpec(HEIGHT,
+                                        View.MeasureSpec.EXACTLY));
+                        view.layout(0, 0, width, HEIGHT);
+
+                        int contentWidth = width - view.getPaddingLeft()
+                                - view.getPaddingRight();
+                        AutofitPrefetcher.Request request =
+                                new AutofitPrefetcher.Request(helper, text, contentWidth);
+                        assertEquals(text + ", " + width + "px wide",
+                                view.getTextSize(),
+                                AutofitEngine.fit(request, null).getTextSize(),
+                                TEXT_SIZE_TOLERANCE);
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void advanceTableFitMatchesPaintFit() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (String text : TEXTS) {
+                    for (int width : WIDTHS) {
+                        for (int maxLines : MAX_LINES) {
+                            float paintSize = fitView(text, width, maxLines, false);
+                            float tableSize = fitView(text, width, maxLines, true);
+                            assertEquals(text + ", " + width + "px wide, " + maxLines + " lines",
+                                    paintSize, tableSize, AutofitHelper.DEFAULT_PRECISION);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private static float fitView(String text, int width, int maxLines,
+            boolean advanceTableEnabled) {
+        TextView view = new TextView(InstrumentationRegistry.getTargetContext());
+        view.setMaxLines(maxLines);
+        AutofitHelper.create(view).setAdvanceTableEnabled(advanceTableEnabled);
+        view.setText(text);
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, width, HEIGHT);
+        return view.getTextSize();
+    }
+
+    private AutofitEngine.Result fit(CharSequence text, int width, int maxLines,
+            float minTextSize, float maxTextSize) {
+        return AutofitEngine.fit(text, mPaint, width, maxLines, minTextSize, maxTextSize,
+                AutofitEngine.DEFAULT_PRECISION, null);
+    }
+}
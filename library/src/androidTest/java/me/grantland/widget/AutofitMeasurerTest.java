@@ -0,0 +1,83 @@
+package me.grantland.widget;
+
+import android.os.Debug;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.DisplayMetrics;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class AutofitMeasurerTest {
+
+    private static final String[] TEXTS = {
+            "The quick brown fox jumps over the lazy dog",
+            "state-of-the-art/well-known,comma-separated;values.and.dots",
+            "input/output-bound request/response round-trips",
+            // Japanese, broken between ideographs
+            "\u65E5\u672C\u8A9E\u306E\u30C6\u30AD\u30B9\u30C8\u3092\u6298\u308A\u8FD4"
+                    + "\u3057\u307E\u3059\u3002\u30AD\u30E3\u30C3\u30B7\u30E5\u306F\u901F\u3044",
+    };
+    private static final int[] WIDTHS = { 90, 160, 300 };
+    private static final int[] MAX_LINES = { 2, 3 };
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void measureDoesNotAllocate() {
+        TextPaint paint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+        AutofitMeasurer measurer = new AutofitMeasurer();
+        for (String text : TEXTS) {
+            measurer.setText(text);
+            // The first measurement grows the buffers.
+            paint.setTextSize(20);
+            measurer.measure(paint, 160, 3);
+
+            // Debug's allocation counting is deprecated, but is the only per-thread count.
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+            for (float size = 8; size <= 64; size += 0.5f) {
+                paint.setTextSize(size);
+                measurer.measure(paint, 160, 3);
+                measurer.measure(paint, 160, 1);
+            }
+            Debug.stopAllocCounting();
+            assertEquals(text, 0, Debug.getThreadAllocCount());
+        }
+    }
+
+    @Test
+    public void multiLineSizeFitsStaticLayout() {
+        DisplayMetrics displayMetrics = new DisplayMetrics();
+        displayMetrics.setToDefaults();
+        TextPaint paint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+        AutofitMeasurer measurer = new AutofitMeasurer();
+        for (String text : TEXTS) {
+            for (int width : WIDTHS) {
+                for (int maxLines : MAX_LINES) {
+                    AutofitParams params = new AutofitParams();
+                    params.mTargetWidth = width;
+                    params.mMaxLines = maxLines;
+                    params.mMinTextSize = 4;
+                    params.mMaxTextSize = 100;
+                    params.mPrecision = AutofitHelper.DEFAULT_PRECISION;
+                    params.mStrategy = AutofitHelper.STRATEGY_SEARCH;
+
+                    float size = AutofitHelper.computeTextSize(text, paint, params,
+                            displayMetrics, measurer);
+                    paint.setTextSize(size);
+                    StaticLayout layout = new StaticLayout(text, paint, width,
+                            Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, true);
+                    String message = text + " at " + size + "px, " + width + "px wide";
+                    assertTrue(message, size == params.mMinTextSize
+                            || layout.getLineCount() <= maxLines);
+                }
+            }
+        }
+    }
+}
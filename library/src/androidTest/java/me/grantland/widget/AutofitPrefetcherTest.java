@@ -0,0 +1,80 @@
+package me.grantland.widget;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.TextPaint;
+import android.view.View;
+import android.widget.TextView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class AutofitPrefetcherTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 200;
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog";
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void boundHelperHitsPrefetchedSize() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                TextView view = new TextView(InstrumentationRegistry.getTargetContext());
+                view.setMaxLines(2);
+                AutofitCache cache = new AutofitCache(16);
+                AutofitHelper helper = AutofitHelper.create(view).setCache(cache);
+                layout(view);
+
+                int width = view.getWidth() - view.getPaddingLeft() - view.getPaddingRight();
+                AutofitPrefetcher.Request request =
+                        new AutofitPrefetcher.Request(helper, TEXT, width);
+                new AutofitPrefetcher(cache, DIRECT_EXECUTOR)
+                        .prefetch(Collections.singletonList(request));
+
+                final AutofitMetrics[] fit = new AutofitMetrics[1];
+                helper.addOnAutofitListener(new AutofitHelper.OnAutofitListener() {
+                    @Override
+                    public void onAutofit(AutofitHelper helper, AutofitMetrics metrics) {
+                        fit[0] = metrics;
+                    }
+                });
+                view.setText(TEXT);
+                layout(view);
+
+                assertNotNull(fit[0]);
+                assertTrue(fit[0].isCacheHit());
+                assertEquals(0, fit[0].getProbeCount());
+                assertEquals(AutofitEngine.fit(request, null).getTextSize(),
+                        view.getTextSize(), 0);
+            }
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyPresetSizesAreRejected() {
+        new AutofitPrefetcher.Request(TEXT, new TextPaint(), WIDTH, 1, 8, 96)
+                .setPresetSizes(new float[0]);
+    }
+
+    private static void layout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+}
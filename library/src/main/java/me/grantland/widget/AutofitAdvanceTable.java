@@ -0,0 +1,156 @@
+package me.grantland.widget;
+
+import android.graphics.Typeface;
+import android.os.Build;
+import android.text.TextPaint;
+import android.util.LruCache;
+
+/**
+ * Tables of glyph advances for the common Latin characters, measured once per typeface and style
+ * at a reference size and scaled linearly to the size being measured.
+ *
+ * <p>Measuring a character from a table is a multiplication rather than a trip through the text
+ * shaper, which makes probes much cheaper. The tables ignore kerning and ligatures, so a size
+ * found with them has to be verified with the paint. Tables are shared by every
+ * {@link AutofitMeasurer} and are evicted least recently used first once they take up more than
+ * {@code MAX_SIZE_BYTES}.</p>
+ */
+final class AutofitAdvanceTable {
+
+    // Characters from U+0000 up to, excluding, this one are covered: Basic Latin, Latin-1
+    // Supplement and Latin Extended-A and -B
+    static final int TABLE_LENGTH = 0x0250;
+
+    // Size the tables are measured at, large enough for hinting and rounding not to matter
+    private static final float REFERENCE_TEXT_SIZE = 256;
+    private static final int MAX_SIZE_BYTES = 64 * 1024;
+
+    private static final LruCache<Key, float[]> sTables =
+            new LruCache<Key, float[]>(MAX_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(Key key, float[] table) {
+                    return 4 * table.length;
+                }
+            };
+
+    private AutofitAdvanceTable() {
+        // Uninstantiable
+    }
+
+    /**
+     * Returns whether every character of {@code chars} up to {@code length} is covered by the
+     * tables. Characters outside of them may need complex shaping, so such text is measured with
+     * the paint instead.
+     */
+    static boolean covers(char[] chars, int length) {
+        for (int i = 0; i < length; i++) {
+            if (chars[i] >= TABLE_LENGTH) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the table of advances for the typeface and style of {@code paint}, measuring it if
+     * needed, or {@code null} if the paint's advances can't be taken from a table.
+     *
+     * @param scratchKey A key to look the table up with, so the lookup doesn't allocate.
+     */
+    static float[] get(TextPaint paint, Key scratchKey) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                && paint.getFontFeatureSettings() != null) {
+            // getFontFeatureSettings() is only available on android-21+
+            return null;
+        }
+
+        Key key = scratchKey.set(paint);
+        float[] table = sTables.get(key);
+        if (table == null) {
+            // Another thread may measure the same table at the same time, which is harmless.
+            table = measure(paint);
+            sTables.put(key.copy(), table);
+        }
+        return table;
+    }
+
+    /**
+     * Fills {@code widths} with the advances of {@code chars} up to {@code length} at the text
+     * size of {@code paint}, which all have to be {@link #covers(char[], int) covered}.
+     */
+    static void getTextWidths(float[] table, TextPaint paint, char[] chars, int length,
+            float[] widths) {
+        float scale = paint.getTextSize() / REFERENCE_TEXT_SIZE;
+        for (int i = 0; i < length; i++) {
+            widths[i] = table[chars[i]] * scale;
+        }
+    }
+
+    private static float[] measure(TextPaint paint) {
+        TextPaint referencePaint = new TextPaint(paint);
+        referencePaint.setTextSize(REFERENCE_TEXT_SIZE);
+
+        float[] table = new float[TABLE_LENGTH];
+        char[] chars = new char[1];
+        for (int i = 0; i < TABLE_LENGTH; i++) {
+            // Measure each character on its own, so the table doesn't pick up any kerning.
+            chars[0] = (char) i;
+            table[i] = referencePaint.measureText(chars, 0, 1);
+        }
+        return table;
+    }
+
+    /**
+     * The paint state that glyph advances depend on, apart from the text size.
+     */
+    static final class Key {
+        private Typeface mTypeface;
+        private int mFlags;
+        private float mTextScaleX;
+        private float mLetterSpacing;
+
+        Key set(TextPaint paint) {
+            mTypeface = paint.getTypeface();
+            mFlags = paint.getFlags();
+            mTextScaleX = paint.getTextScaleX();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                // getLetterSpacing() is only available on android-21+
+                mLetterSpacing = paint.getLetterSpacing();
+            }
+            return this;
+        }
+
+        Key copy() {
+            Key key = new Key();
+            key.mTypeface = mTypeface;
+            key.mFlags = mFlags;
+            key.mTextScaleX = mTextScaleX;
+            key.mLetterSpacing = mLetterSpacing;
+            return key;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mTypeface != null ? mTypeface.hashCode() : 0;
+            result = 31 * result + mFlags;
+            result = 31 * result + Float.floatToIntBits(mTextScaleX);
+            result = 31 * result + Float.floatToIntBits(mLetterSpacing);
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mTypeface == key.mTypeface
+                    && mFlags == key.mFlags
+                    && Float.compare(mTextScaleX, key.mTextScaleX) == 0
+                    && Float.compare(mLetterSpacing, key.mLetterSpacing) == 0;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package me.grantland.widget;
+
+import android.graphics.Typeface;
+import android.os.Build;
+import android.text.Spanned;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.text.style.MetricAffectingSpan;
+import android.util.LruCache;
+
+import java.util.Locale;
+
+/**
+ * A bounded LRU cache of fitted text sizes, keyed by the text, the relevant {@link TextPaint}
+ * state and the constraints the text was fitted against.
+ *
+ * <p>Attach an instance to an {@link AutofitHelper} with
+ * {@link AutofitHelper#setCache(AutofitCache)} to skip the search whenever the same text is
+ * fitted against the same constraints again, or install one process-wide with
+ * {@link #setSharedCache(AutofitCache)} to share fitted sizes between every helper. Back it with
+ * an {@link AutofitDiskCache} to keep fitted sizes across launches. Instances are safe to use from
+ * multiple threads.</p>
+ */
+public class AutofitCache {
+
+    // Approximate retained size of an entry, excluding the characters of its text
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private static volatile AutofitCache sSharedCache;
+
+    /**
+     * Returns the process-wide {@code AutofitCache}, or {@code null} if none is installed.
+     */
+    public static AutofitCache getSharedCache() {
+        return sSharedCache;
+    }
+
+    /**
+     * Installs a process-wide {@code AutofitCache} that is used by every {@link AutofitHelper}
+     * without a cache of its own, including those created by {@link AutofitTextView} and
+     * {@link AutofitLayout}. Pass {@code null} to uninstall it. There is no shared cache by
+     * default.
+     */
+    public static void setSharedCache(AutofitCache cache) {
+        sSharedCache = cache;
+    }
+
+    private final LruCache<Key, Float> mCache;
+    private final boolean mSizeInBytes;
+    private volatile AutofitDiskCache mDiskCache;
+
+    /**
+     * Creates a new cache holding at most {@code maxEntries} fitted sizes.
+     */
+    public AutofitCache(int maxEntries) {
+        this(maxEntries, false);
+    }
+
+    /**
+     * Creates a new cache holding at most {@code maxSize} fitted sizes, or fitted sizes with an
+     * approximate retained size of at most {@code maxSize} bytes if {@code sizeInBytes} is true.
+     */
+    public AutofitCache(int maxSize, boolean sizeInBytes) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mSizeInBytes = sizeInBytes;
+        mCache = new LruCache<Key, Float>(maxSize) {
+            @Override
+            protected int sizeOf(Key key, Float size) {
+                return mSizeInBytes ? ENTRY_OVERHEAD_BYTES + 2 * key.mText.length() : 1;
+            }
+        };
+    }
+
+    /**
+     * Returns the {@link AutofitDiskCache} backing this cache, or {@code null} if there is none.
+     */
+    public AutofitDiskCache getDiskCache() {
+        return mDiskCache;
+    }
+
+    /**
+     * Set an {@link AutofitDiskCache} to back this cache, or {@code null} to remove it. Sizes
+     * missing from this cache are looked up in the disk cache, and new sizes are stored in both,
+     * so that they survive the process.
+     */
+    public void setDiskCache(AutofitDiskCache diskCache) {
+        mDiskCache = diskCache;
+    }
+
+    /**
+     * Returns the cached text size for {@code key}, or {@code -1} if there is none.
+     */
+    float get(Key key) {
+        Float size = mCache.get(key);
+        if (size != null) {
+            return size;
+        }
+
+        AutofitDiskCache diskCache = mDiskCache;
+        if (diskCache != null) {
+            float diskSize = diskCache.get(key);
+            if (diskSize >= 0) {
+                mCache.put(key.copy(), diskSize);
+                return diskSize;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the text size for {@code key}. The key is copied, so a scratch key may be reused
+     * after this call.
+     */
+    void put(Key key, float size) {
+        mCache.put(key.copy(), size);
+
+        AutofitDiskCache diskCache = mDiskCache;
+        if (diskCache != null) {
+            diskCache.put(key, size);
+        }
+    }
+
+    /**
+     * Removes all the cached text sizes, including those in the {@link AutofitDiskCache} if any.
+     * Call this when something not captured by the cache keys changes, such as the configuration
+     * or the installed fonts.
+     */
+    public void invalidate() {
+        mCache.evictAll();
+
+        AutofitDiskCache diskCache = mDiskCache;
+        if (diskCache != null) {
+            diskCache.invalidate();
+        }
+    }
+
+    /**
+     * Returns whether {@link #size()} and {@link #maxSize()} are measured in bytes rather than
+     * entries.
+     */
+    public boolean isSizeInBytes() {
+        return mSizeInBytes;
+    }
+
+    /**
+     * Returns the number of fitted sizes in the cache, or their approximate retained size in bytes
+     * if {@link #isSizeInBytes()}.
+     */
+    public int size() {
+        return mCache.size();
+    }
+
+    /**
+     * Returns the maximum number of fitted sizes in the cache, or their maximum approximate
+     * retained size in bytes if {@link #isSizeInBytes()}.
+     */
+    public int maxSize() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * Returns the number of times a lookup returned a fitted size.
+     */
+    public int hitCount() {
+        return mCache.hitCount();
+    }
+
+    /**
+     * Returns the number of times a lookup did not find a fitted size and a search had to be run.
+     */
+    public int missCount() {
+        return mCache.missCount();
+    }
+
+    /**
+     * Returns the number of fitted sizes that have been evicted to stay within {@link #maxSize()}.
+     */
+    public int evictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * Returns the fraction of lookups that returned a fitted size, or {@code 0} if there were no
+     * lookups.
+     */
+    public float hitRate() {
+        int hits = hitCount();
+        int lookups = hits + missCount();
+        return lookups > 0 ? (float) hits / lookups : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "AutofitCache[size=" + size() + ",maxSize=" + maxSize() + ",hits=" + hitCount()
+                + ",misses=" + missCount() + ",evictions=" + evictionCount()
+                + ",hitRate=" + hitRate() + "]";
+    }
+
+    /**
+     * Returns whether the fitted size of {@code text} can be cached. Text with spans that affect
+     * its metrics can't be, since the spans aren't part of the key.
+     */
+    static boolean isCacheable(CharSequence text) {
+        if (text instanceof Spanned) {
+            Spanned spanned = (Spanned) text;
+            int length = spanned.length();
+            return spanned.nextSpanTransition(0, length, MetricAffectingSpan.class) >= length;
+        }
+        return true;
+    }
+
+    /**
+     * The inputs of a single fit. Keys are mutable so that a lookup doesn't allocate; the cache
+     * only stores copies.
+     */
+    static final class Key {
+        private CharSequence mText;
+        private Typeface mTypeface;
+        private int mFlags;
+        private float mTextScaleX;
+        private float mTextSkewX;
+        private float mLetterSpacing;
+        private String mFontFeatureSettings;
+        private Locale mTextLocale;
+        private final AutofitParams mParams = new AutofitParams();
+        private int mHashCode;
+
+        /**
+         * Sets the key to the given text, paint state, bounds and properties.
+         */
+        Key set(CharSequence text, TextPaint paint, AutofitParams params) {
+            mText = text;
+            mTypeface = paint.getTypeface();
+            mFlags = paint.getFlags();
+            mTextScaleX = paint.getTextScaleX();
+            mTextSkewX = paint.getTextSkewX();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                // getLetterSpacing() and getFontFeatureSettings() are only available on android-21+
+                mLetterSpacing = paint.getLetterSpacing();
+                mFontFeatureSettings = paint.getFontFeatureSettings();
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                // getTextLocale() is only available on android-17+
+                mTextLocale = paint.getTextLocale();
+            }
+            mParams.set(params);
+            mHashCode = computeHashCode();
+            return this;
+        }
+
+        /**
+         * Releases the reference to the text set with
+         * {@link #set(CharSequence, TextPaint, AutofitParams)}, such as an Editable that would
+         * otherwise keep its TextView alive. The key must be set again before it is used.
+         */
+        void clearText() {
+            mText = null;
+        }
+
+        Key copy() {
+            Key key = new Key();
+            key.mText = mText.toString();
+            key.mTypeface = mTypeface;
+            key.mFlags = mFlags;
+            key.mTextScaleX = mTextScaleX;
+            key.mTextSkewX = mTextSkewX;
+            key.mLetterSpacing = mLetterSpacing;
+            key.mFontFeatureSettings = mFontFeatureSettings;
+            key.mTextLocale = mTextLocale;
+            key.mParams.set(mParams);
+            key.mHashCode = mHashCode;
+            return key;
+        }
+
+        private int computeHashCode() {
+            int result = 0;
+            for (int i = 0, length = mText.length(); i < length; i++) {
+                result = 31 * result + mText.charAt(i);
+            }
+            result = 31 * result + (mTypeface != null ? mTypeface.hashCode() : 0);
+            result = 31 * result + mFlags;
+            result = 31 * result + Float.floatToIntBits(mTextScaleX);
+            result = 31 * result + Float.floatToIntBits(mTextSkewX);
+            result = 31 * result + Float.floatToIntBits(mLetterSpacing);
+            result = 31 * result
+                    + (mFontFeatureSettings != null ? mFontFeatureSettings.hashCode() : 0);
+            result = 31 * result + (mTextLocale != null ? mTextLocale.hashCode() : 0);
+            result = 31 * result + mParams.hashCode();
+            return result;
+        }
+
+        /**
+         * Returns a 64-bit hash of the key that, unlike {@link #hashCode()}, is stable across
+         * processes, for the {@link AutofitDiskCache}.
+         */
+        long longHashCode() {
+            long hash = AutofitDiskCache.HASH_SEED;
+            for (int i = 0, length = mText.length(); i < length; i++) {
+                hash = AutofitDiskCache.mix(hash, mText.charAt(i));
+            }
+            hash = AutofitDiskCache.mix(hash, mText.length());
+            hash = AutofitDiskCache.mix(hash, AutofitDiskCache.getTypefaceHash(mTypeface));
+            hash = AutofitDiskCache.mix(hash, mFlags);
+            hash = AutofitDiskCache.mix(hash, Float.floatToIntBits(mTextScaleX));
+            hash = AutofitDiskCache.mix(hash, Float.floatToIntBits(mTextSkewX));
+            hash = AutofitDiskCache.mix(hash, Float.floatToIntBits(mLetterSpacing));
+            hash = AutofitDiskCache.mix(hash,
+                    mFontFeatureSettings != null ? mFontFeatureSettings.hashCode() : 0);
+            hash = AutofitDiskCache.mix(hash,
+                    mTextLocale != null ? mTextLocale.toString().hashCode() : 0);
+            return mParams.longHashCode(hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mHashCode == key.mHashCode
+                    && mTypeface == key.mTypeface
+                    && mFlags == key.mFlags
+                    && Float.compare(mTextScaleX, key.mTextScaleX) == 0
+                    && Float.compare(mTextSkewX, key.mTextSkewX) == 0
+                    && Float.compare(mLetterSpacing, key.mLetterSpacing) == 0
+                    && TextUtils.equals(mFontFeatureSettings, key.mFontFeatureSettings)
+                    && (mTextLocale != null ? mTextLocale.equals(key.mTextLocale)
+                            : key.mTextLocale == null)
+                    && mParams.equals(key.mParams)
+                    && TextUtils.equals(mText, key.mText);
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package me.grantland.widget;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextPaint;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * A persistent cache of fitted text sizes, so that the same texts fitted on every launch are
+ * looked up instead of searched for, starting with the first frame.
+ *
+ * <p>Attach an instance to an {@link AutofitCache} with
+ * {@link AutofitCache#setDiskCache(AutofitDiskCache)}; sizes missing from the {@code AutofitCache}
+ * are then looked up here, and new sizes are stored in both. Entries are 64-bit hashes of the
+ * text, paint and bounds mapped to a size, and are kept in a compact binary file that is read in
+ * one go by {@link #load()} and written back on an {@link Executor} shortly after new sizes are
+ * stored. The file is tagged with a fingerprint of the display density, font scale, locale and
+ * system build, and is discarded if any of them changed. Each time the cache is loaded starts a
+ * new session, and every entry records the last session it was used in and how many sessions it
+ * was used in. Once the cache is full, the least recently used quarter of the entries, by session
+ * and then by the number of sessions, is evicted to make room, so texts shown on every launch
+ * outlast those scrolled past once.</p>
+ *
+ * <p>Instances are safe to use from multiple threads.</p>
+ */
+public class AutofitDiskCache {
+
+    private static final String TAG = "AutofitDiskCache";
+
+    private static final String DEFAULT_FILE_NAME = "autofit_sizes.bin";
+    private static final int MAGIC = 0x41465443; // "AFTC"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+    private static final int ENTRY_BYTES = 8 + 4 + 4 + 4;
+
+    static final int MAX_ENTRIES = 4096;
+    // Share of the entries evicted at once when the cache is full
+    private static final int EVICTED_ENTRIES = MAX_ENTRIES / 4;
+    // Delay after storing a size before writing the file, so bursts of fits cost a single write
+    private static final long SAVE_DELAY_MS = 2000;
+
+    static final long HASH_SEED = 0xcbf29ce484222325L;
+    private static final long HASH_PRIME = 0x100000001b3L;
+
+    // Typefaces are identified by their metrics, since Typeface#hashCode() changes between
+    // processes.
+    private static final String TYPEFACE_SAMPLE = "AaBbGgHhIiMmWw0123 .,";
+    private static final WeakHashMap<Typeface, Long> sTypefaceHashes =
+            new WeakHashMap<Typeface, Long>();
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Returns {@code hash} combined with {@code value}.
+     */
+    static long mix(long hash, long value) {
+        return (hash ^ value) * HASH_PRIME;
+    }
+
+    /**
+     * Returns a hash of {@code typeface} that is stable across processes.
+     */
+    static long getTypefaceHash(Typeface typeface) {
+        synchronized (sTypefaceHashes) {
+            Long hash = sTypefaceHashes.get(typeface);
+            if (hash != null) {
+                return hash;
+            }
+        }
+
+        TextPaint paint = new TextPaint();
+        paint.setTypeface(typeface);
+        paint.setTextSize(100);
+        Paint.FontMetricsInt fm = paint.getFontMetricsInt();
+        long hash = HASH_SEED;
+        hash = mix(hash, Float.floatToIntBits(paint.measureText(TYPEFACE_SAMPLE)));
+        hash = mix(hash, fm.top);
+        hash = mix(hash, fm.ascent);
+        hash = mix(hash, fm.descent);
+        hash = mix(hash, fm.bottom);
+        hash = mix(hash, typeface != null ? typeface.getStyle() : 0);
+
+        synchronized (sTypefaceHashes) {
+            sTypefaceHashes.put(typeface, hash);
+        }
+        return hash;
+    }
+
+    private final File mFile;
+    private final long mFingerprint;
+    private final Executor mExecutor;
+
+    // Open addressing hash table of entries; a key of 0 marks an empty slot.
+    private long[] mKeys = new long[16];
+    private float[] mSizes = new float[16];
+    // The last session each entry was looked up or stored in, and the number of sessions it was
+    // used in
+    private int[] mLastSessions = new int[16];
+    private int[] mSessionCounts = new int[16];
+    private int mSize;
+    private int mSession = 1;
+    private boolean mSavePending;
+
+    private final Runnable mSaveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    save();
+                }
+            });
+        }
+    };
+
+    /**
+     * Creates a new disk cache stored in the cache directory of {@code context}, fingerprinted
+     * with its current configuration, that writes itself back on {@code executor}, such as
+     * {@link android.os.AsyncTask#SERIAL_EXECUTOR}. Call {@link #load()} before using it.
+     */
+    public AutofitDiskCache(Context context, Executor executor) {
+        this(new File(context.getCacheDir(), DEFAULT_FILE_NAME), getFingerprint(context),
+                executor);
+    }
+
+    /**
+     * Creates a new disk cache stored in {@code file}, which is discarded when loaded if it was
+     * written with another {@code fingerprint}, that writes itself back on {@code executor}. Call
+     * {@link #load()} before using it.
+     */
+    public AutofitDiskCache(File file, long fingerprint, Executor executor) {
+        mFile = file;
+        mFingerprint = fingerprint;
+        mExecutor = executor;
+    }
+
+    /**
+     * Returns a fingerprint of the display density, font scale, locale and system build of
+     * {@code context}, which fitted sizes depend on beyond what their keys capture.
+     */
+    public static long getFingerprint(Context context) {
+        DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+        Configuration configuration = context.getResources().getConfiguration();
+        long hash = HASH_SEED;
+        hash = mix(hash, Float.floatToIntBits(displayMetrics.density));
+        hash = mix(hash, Float.floatToIntBits(displayMetrics.scaledDensity));
+        hash = mix(hash, configuration.locale != null
+                ? configuration.locale.toString().hashCode() : 0);
+        hash = mix(hash, Build.FINGERPRINT != null ? Build.FINGERPRINT.hashCode() : 0);
+        return hash;
+    }
+
+    /**
+     * Reads the file into memory, replacing any sizes stored so far, and starts a new session. A
+     * missing or corrupt file, or one with another fingerprint, leaves the cache empty. This does
+     * I/O, so call it off the main thread where possible, before the first fit.
+     */
+    public void load() {
+        byte[] bytes;
+        try {
+            RandomAccessFile file = new RandomAccessFile(mFile, "r");
+            try {
+                bytes = new byte[(int) Math.min(file.length(),
+                        HEADER_BYTES + (long) MAX_ENTRIES * ENTRY_BYTES)];
+                file.readFully(bytes);
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            // No cache yet
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (bytes.length < HEADER_BYTES
+                || buffer.getInt() != MAGIC
+                || buffer.getInt() != VERSION
+                || buffer.getLong() != mFingerprint) {
+            return;
+        }
+        int session = buffer.getInt();
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / ENTRY_BYTES) {
+            Log.w(TAG, "Discarding truncated cache " + mFile);
+            return;
+        }
+
+        synchronized (this) {
+            clear();
+            mSession = session + 1;
+            for (int i = 0; i < count; i++) {
+                int index = putEntry(buffer.getLong(), buffer.getFloat());
+                mLastSessions[index] = buffer.getInt();
+                mSessionCounts[index] = buffer.getInt();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of fitted sizes in the cache.
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Removes all the fitted sizes, from memory right away and from the file once it is written
+     * back.
+     */
+    public void invalidate() {
+        synchronized (this) {
+            clear();
+        }
+        scheduleSave();
+    }
+
+    /**
+     * Returns the cached text size for {@code key}, or {@code -1} if there is none.
+     */
+    float get(AutofitCache.Key key) {
+        long hash = toEntryKey(key.longHashCode());
+        float size;
+        boolean touched;
+        synchronized (this) {
+            int index = indexOf(hash);
+            if (mKeys[index] != hash) {
+                return -1;
+            }
+            touched = touch(index);
+            size = mSizes[index];
+        }
+        if (touched) {
+            // Keep the entry from looking unused to the next session.
+            scheduleSave();
+        }
+        return size;
+    }
+
+    /**
+     * Stores the text size for {@code key}, to be written back shortly. Once the cache holds
+     * {@code MAX_ENTRIES} sizes, the least recently used ones are evicted first.
+     */
+    void put(AutofitCache.Key key, float size) {
+        long hash = toEntryKey(key.longHashCode());
+        synchronized (this) {
+            int index = indexOf(hash);
+            boolean changed = mKeys[index] != hash || mSizes[index] != size;
+            if (!touch(putEntry(hash, size)) && !changed) {
+                return;
+            }
+        }
+        scheduleSave();
+    }
+
+    private void scheduleSave() {
+        synchronized (this) {
+            if (mSavePending) {
+                return;
+            }
+            mSavePending = true;
+        }
+        sMainHandler.postDelayed(mSaveRunnable, SAVE_DELAY_MS);
+    }
+
+    /**
+     * Writes a snapshot of the cache to a temporary file and renames it over the file, so a
+     * reader never sees a partially written cache.
+     */
+    void save() {
+        ByteBuffer buffer;
+        synchronized (this) {
+            mSavePending = false;
+            buffer = ByteBuffer.allocate(HEADER_BYTES + mSize * ENTRY_BYTES);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(mFingerprint);
+            buffer.putInt(mSession);
+            buffer.putInt(mSize);
+            for (int i = 0; i < mKeys.length; i++) {
+                if (mKeys[i] != 0) {
+                    buffer.putLong(mKeys[i]);
+                    buffer.putFloat(mSizes[i]);
+                    buffer.putInt(mLastSessions[i]);
+                    buffer.putInt(mSessionCounts[i]);
+                }
+            }
+        }
+
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        try {
+            FileOutputStream out = new FileOutputStream(tempFile);
+            try {
+                out.write(buffer.array());
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(mFile)) {
+                throw new IOException("Failed to rename " + tempFile + " to " + mFile);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write cache " + mFile, e);
+            tempFile.delete();
+        }
+    }
+
+    private static long toEntryKey(long hash) {
+        // 0 marks an empty slot.
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * Returns the slot of {@code key}, or the empty slot it would go into.
+     */
+    private int indexOf(long key) {
+        long[] keys = mKeys;
+        int mask = keys.length - 1;
+        int index = (int) (key ^ (key >>> 32)) & mask;
+        while (keys[index] != 0 && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * Marks the entry at {@code index} as used in the current session, and returns whether it
+     * wasn't already.
+     */
+    private boolean touch(int index) {
+        if (mLastSessions[index] == mSession) {
+            return false;
+        }
+        mLastSessions[index] = mSession;
+        mSessionCounts[index]++;
+        return true;
+    }
+
+    /**
+     * Stores an entry, not yet used in any session if it is new, and returns its slot.
+     */
+    private int putEntry(long key, float size) {
+        int index = indexOf(key);
+        if (mKeys[index] == key) {
+            mSizes[index] = size;
+            return index;
+        }
+        if (mSize >= MAX_ENTRIES) {
+            evict();
+            index = indexOf(key);
+        }
+        if ((mSize + 1) * 2 > mKeys.length) {
+            // Keep the table at most half full.
+            rehash(mKeys.length * 2);
+            index = indexOf(key);
+        }
+        mKeys[index] = key;
+        mSizes[index] = size;
+        mLastSessions[index] = 0;
+        mSessionCounts[index] = 0;
+        mSize++;
+        return index;
+    }
+
+    /**
+     * Makes room for new entries by dropping the {@code EVICTED_ENTRIES} least recently used
+     * ones, ranked by the last session they were used in and then by the number of sessions.
+     */
+    private void evict() {
+        long[] ranks = new long[mSize];
+        int count = 0;
+        for (int i = 0; i < mKeys.length; i++) {
+            if (mKeys[i] != 0) {
+                ranks[count++] = getRank(i);
+            }
+        }
+        Arrays.sort(ranks);
+        // Entries ranked below the highest evicted rank all go, and only as many of those ranked
+        // at it as are needed.
+        long maxRank = ranks[EVICTED_ENTRIES - 1];
+        int tieCount = 1;
+        while (tieCount < EVICTED_ENTRIES && ranks[EVICTED_ENTRIES - 1 - tieCount] == maxRank) {
+            tieCount++;
+        }
+        for (int i = 0; i < mKeys.length; i++) {
+            if (mKeys[i] == 0) {
+                continue;
+            }
+            long rank = getRank(i);
+            if (rank < maxRank || (rank == maxRank && tieCount-- > 0)) {
+                mKeys[i] = 0;
+            }
+        }
+        // Removing entries breaks the probe sequences of those after them.
+        rehash(mKeys.length);
+    }
+
+    private long getRank(int index) {
+        return ((long) mLastSessions[index] << 32) | mSessionCounts[index];
+    }
+
+    /**
+     * Moves the entries into a table of {@code capacity} slots.
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = mKeys;
+        float[] oldSizes = mSizes;
+        int[] oldLastSessions = mLastSessions;
+        int[] oldSessionCounts = mSessionCounts;
+        mKeys = new long[capacity];
+        mSizes = new float[capacity];
+        mLastSessions = new int[capacity];
+        mSessionCounts = new int[capacity];
+        mSize = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int index = indexOf(oldKeys[i]);
+                mKeys[index] = oldKeys[i];
+                mSizes[index] = oldSizes[i];
+                mLastSessions[index] = oldLastSessions[i];
+                mSessionCounts[index] = oldSessionCounts[i];
+                mSize++;
+            }
+        }
+    }
+
+    private void clear() {
+        mKeys = new long[16];
+        mSizes = new float[16];
+        mLastSessions = new int[16];
+        mSessionCounts = new int[16];
+        mSize = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "AutofitDiskCache[file=" + mFile + ",size=" + size() + "]";
+    }
+}
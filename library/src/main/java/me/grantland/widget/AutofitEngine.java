@@ -0,0 +1,185 @@
+package me.grantland.widget;
+
+import android.content.res.Resources;
+import android.text.TextPaint;
+import android.util.DisplayMetrics;
+
+/**
+ * Fits text to bounds without a View, with the same search an {@link AutofitHelper} uses. This
+ * is stateless and may be called from any thread, such as to compute sizes in batches ahead of
+ * time or to plan layouts without inflating them.
+ *
+ * <pre>
+ * AutofitEngine.Result result = AutofitEngine.fit(text, textView.getPaint(), width, maxLines,
+ *         minTextSize, maxTextSize, AutofitEngine.DEFAULT_PRECISION, displayMetrics);
+ * float size = result.getTextSize();
+ * </pre>
+ *
+ * <p>Nothing is cached; to look sizes up in an {@link AutofitCache}, use an
+ * {@link AutofitPrefetcher} instead.</p>
+ */
+public final class AutofitEngine {
+
+    /**
+     * The precision an {@link AutofitHelper} uses by default.
+     */
+    public static final float DEFAULT_PRECISION = AutofitHelper.DEFAULT_PRECISION;
+
+    private AutofitEngine() {
+        // Uninstantiable
+    }
+
+    /**
+     * Returns the largest size, to within {@code precision}, that {@code text} fits at on at most
+     * {@code maxLines} lines no wider than {@code width}, but no smaller than
+     * {@code minTextSize} and no larger than {@code maxTextSize}.
+     *
+     * @param text The text as displayed, after the TextView's transformation method if any. It
+     *             must not change during the call.
+     * @param paint A paint with the same typeface, style and other properties as the TextView's,
+     *              such as {@link android.widget.TextView#getPaint()}. It is copied, and must not
+     *              change during the call.
+     * @param width The width available to the text in pixels, excluding padding.
+     * @param maxLines The maximum number of lines.
+     * @param minTextSize The minimum text size in pixels.
+     * @param maxTextSize The maximum text size in pixels.
+     * @param precision The precision of the size in pixels; lower is more precise and takes more
+     *                  time.
+     * @param displayMetrics The display metrics the text is displayed with, or {@code null} for
+     *                       those of the system.
+     */
+    public static Result fit(CharSequence text, TextPaint paint, int width, int maxLines,
+            float minTextSize, float maxTextSize, float precision, DisplayMetrics displayMetrics) {
+        if (text == null) {
+            throw new IllegalArgumentException("text == null");
+        }
+        if (paint == null) {
+            throw new IllegalArgumentException("paint == null");
+        }
+        if (width <= 0) {
+            throw new IllegalArgumentException("width <= 0: " + width);
+        }
+        if (maxLines <= 0) {
+            throw new IllegalArgumentException("maxLines <= 0: " + maxLines);
+        }
+        if (minTextSize > maxTextSize) {
+            throw new IllegalArgumentException(
+                    "minTextSize > maxTextSize: " + minTextSize + " > " + maxTextSize);
+        }
+
+        AutofitParams params = new AutofitParams();
+        params.mTargetWidth = width;
+        params.mMaxLines = maxLines;
+        params.mMinTextSize = minTextSize;
+        params.mMaxTextSize = maxTextSize;
+        params.mPrecision = precision;
+        params.mStrategy = AutofitHelper.STRATEGY_SEARCH;
+        return fit(text, paint, params, displayMetrics);
+    }
+
+    /**
+     * Returns the size that the text of {@code request} fits at, with all of its properties,
+     * such as the height, line spacing, preset sizes and strategy copied from a helper.
+     *
+     * @param displayMetrics The display metrics the text is displayed with, or {@code null} for
+     *                       those of the system.
+     */
+    public static Result fit(AutofitPrefetcher.Request request, DisplayMetrics displayMetrics) {
+        if (request == null) {
+            throw new IllegalArgumentException("request == null");
+        }
+        return fit(request.mText, request.mPaint, request.mParams, displayMetrics);
+    }
+
+    private static Result fit(CharSequence text, TextPaint paint, AutofitParams params,
+            DisplayMetrics displayMetrics) {
+        if (displayMetrics == null) {
+            displayMetrics = Resources.getSystem().getDisplayMetrics();
+        }
+
+        long startTime = System.nanoTime();
+        AutofitHelper.Scratch scratch = AutofitHelper.getScratch();
+        TextPaint scratchPaint = scratch.mPaint;
+        scratchPaint.set(paint);
+        AutofitMeasurer measurer = scratch.mMeasurer;
+        measurer.resetMeasureCount();
+        float size;
+        try {
+            size = AutofitHelper.computeTextSize(text, scratchPaint, params, displayMetrics,
+                    measurer);
+        } finally {
+            scratchPaint.reset();
+        }
+        return new Result(size, measurer.getMeasureCount(), measurer.getLayoutCount(),
+                measurer.getPaintMeasureCount(), System.nanoTime() - startTime);
+    }
+
+    /**
+     * The size a text fits at, and what it cost to find it.
+     */
+    public static final class Result {
+        private final float mTextSize;
+        private final int mProbeCount;
+        private final int mLayoutCount;
+        private final int mPaintMeasureCount;
+        private final long mElapsedNanos;
+
+        Result(float textSize, int probeCount, int layoutCount, int paintMeasureCount,
+                long elapsedNanos) {
+            mTextSize = textSize;
+            mProbeCount = probeCount;
+            mLayoutCount = layoutCount;
+            mPaintMeasureCount = paintMeasureCount;
+            mElapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Returns the size the text fits at, in pixels, or the minimum text size if it doesn't
+         * fit at any size.
+         */
+        public float getTextSize() {
+            return mTextSize;
+        }
+
+        /**
+         * Returns the number of times the text was measured.
+         *
+         * @see AutofitMetrics#getProbeCount()
+         */
+        public int getProbeCount() {
+            return mProbeCount;
+        }
+
+        /**
+         * Returns the number of {@link android.text.StaticLayout}s built to measure the text.
+         *
+         * @see AutofitMetrics#getLayoutCount()
+         */
+        public int getLayoutCount() {
+            return mLayoutCount;
+        }
+
+        /**
+         * Returns the number of times the text was measured with the paint.
+         *
+         * @see AutofitMetrics#getPaintMeasureCount()
+         */
+        public int getPaintMeasureCount() {
+            return mPaintMeasureCount;
+        }
+
+        /**
+         * Returns the wall time the fit took in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return mElapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "AutofitEngine.Result[textSize=" + mTextSize + ",probes=" + mProbeCount
+                    + ",layouts=" + mLayoutCount + ",paintMeasures=" + mPaintMeasureCount
+                    + ",elapsedNanos=" + mElapsedNanos + "]";
+        }
+    }
+}
@@ -3,11 +3,16 @@ package me.grantland.widget;
 import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Typeface;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
 import android.text.Layout;
-import android.text.StaticLayout;
+import android.text.Spanned;
+import android.text.SpannedString;
 import android.text.TextPaint;
+import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.text.method.SingleLineTransformationMethod;
 import android.text.method.TransformationMethod;
@@ -16,9 +21,12 @@ import android.util.DisplayMetrics;
 import android.util.Log;
 import android.util.TypedValue;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 /**
  * A helper class to enable automatically resizing {@link TextView}`s {@code textSize} to fit
@@ -27,16 +35,104 @@ import java.util.ArrayList;
  * @attr ref R.styleable.AutofitTextView_sizeToFit
  * @attr ref R.styleable.AutofitTextView_minTextSize
  * @attr ref R.styleable.AutofitTextView_precision
+ * @attr ref R.styleable.AutofitTextView_stepGranularity
+ * @attr ref R.styleable.AutofitTextView_presetSizes
+ * @attr ref R.styleable.AutofitTextView_strategy
+ * @attr ref R.styleable.AutofitTextView_fitHeight
+ * @attr ref R.styleable.AutofitTextView_probeBreakStrategy
+ * @attr ref R.styleable.AutofitTextView_probeHyphenationFrequency
  */
 public class AutofitHelper {
 
     private static final String TAG = "AutoFitTextHelper";
     private static final boolean SPEW = false;
 
+    /**
+     * Searches for the largest text size that fits, to within {@code precision}. This is the
+     * default strategy.
+     */
+    public static final int STRATEGY_SEARCH = 0;
+    /**
+     * For a single line, computes the text size straight from the text's width at the maximum
+     * size, assuming that text width scales linearly with text size, and verifies it with one or
+     * two more measurements. {@code precision} is ignored. Text with more than one line falls back
+     * to {@link #STRATEGY_SEARCH}.
+     */
+    public static final int STRATEGY_LINEAR = 1;
+
     // Minimum size of the text in pixels
     private static final int DEFAULT_MIN_TEXT_SIZE = 8; //sp
     // How precise we want to be when reaching the target textWidth size
-    private static final float DEFAULT_PRECISION = 0.5f;
+    static final float DEFAULT_PRECISION = 0.5f;
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    // Scratch space for fits, shared by every helper fitting on the same thread
+    private static final ThreadLocal<Scratch> sScratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private static OnAutofitListener sGlobalOnAutofitListener;
+    private static long sFitBudgetNanos;
+    private static OnFitBudgetExceededListener sOnFitBudgetExceededListener;
+
+    // Difference in pixels below which a fitted size isn't worth a new layout
+    private static final float TEXT_SIZE_EPSILON = 0.05f;
+
+    // Hard cap on the number of probes of a single search
+    private static final int MAX_ITERATIONS = 32;
+    // Text width is only almost proportional to text size, so bounds derived from it are widened
+    // by this fraction.
+    private static final float BOUND_MARGIN = 0.01f;
+    // Number of measurements STRATEGY_LINEAR takes before falling back to a search
+    private static final int MAX_LINEAR_MEASUREMENTS = 3;
+
+    // How the text changed since the last fit, as far as it bounds the next fit
+    private static final int TEXT_CHANGE_NONE = -1;
+    private static final int TEXT_CHANGE_UNKNOWN = 0;
+    // Characters were only inserted, so the text can only fit at the same size or smaller
+    private static final int TEXT_CHANGE_INSERTION = 1;
+    // Characters were only deleted, so the text can only fit at the same size or larger
+    private static final int TEXT_CHANGE_DELETION = 2;
+
+    /**
+     * Returns the {@link OnAutofitListener} that is notified of the fits of every helper, or
+     * {@code null} if none is set.
+     */
+    public static OnAutofitListener getGlobalOnAutofitListener() {
+        return sGlobalOnAutofitListener;
+    }
+
+    /**
+     * Set an {@link OnAutofitListener} that is notified of the fits of every helper, in addition
+     * to the listeners of each helper, or {@code null} to remove it. Must be called on the main
+     * thread.
+     */
+    public static void setGlobalOnAutofitListener(OnAutofitListener listener) {
+        sGlobalOnAutofitListener = listener;
+    }
+
+    /**
+     * Returns the time in nanoseconds a single fit may take before it is reported to the
+     * {@link OnFitBudgetExceededListener}.
+     */
+    public static long getFitBudgetNanos() {
+        return sFitBudgetNanos;
+    }
+
+    /**
+     * Set the time a single fit of any helper may take, such as
+     * {@code TimeUnit.MILLISECONDS.toNanos(2)}, and the {@link OnFitBudgetExceededListener} that
+     * is notified of every fit that takes longer, or {@code null} to stop checking fits. The
+     * metrics it is notified with include the length of the text and the bounds it was fitted
+     * to, so that pathological texts can be found in the field. Must be called on the main thread.
+     */
+    public static void setFitBudget(long budgetNanos, OnFitBudgetExceededListener listener) {
+        sFitBudgetNanos = budgetNanos;
+        sOnFitBudgetExceededListener = listener;
+    }
 
     /**
      * Creates a new instance of {@code AutofitHelper} that wraps a {@link TextView} and enables
@@ -65,6 +161,12 @@ public class AutofitHelper {
             Context context = view.getContext();
             int minTextSize = (int) helper.getMinTextSize();
             float precision = helper.getPrecision();
+            float stepGranularity = helper.getStepGranularity();
+            float[] presetSizes = null;
+            int strategy = helper.getStrategy();
+            boolean fitHeight = helper.isFitHeight();
+            int probeBreakStrategy = helper.getProbeBreakStrategy();
+            int probeHyphenationFrequency = helper.getProbeHyphenationFrequency();
 
             TypedArray ta = context.obtainStyledAttributes(
                     attrs,
@@ -75,10 +177,26 @@ public class AutofitHelper {
             minTextSize = ta.getDimensionPixelSize(R.styleable.AutofitTextView_minTextSize,
                     minTextSize);
             precision = ta.getFloat(R.styleable.AutofitTextView_precision, precision);
+            stepGranularity = ta.getDimension(R.styleable.AutofitTextView_stepGranularity,
+                    stepGranularity);
+            presetSizes = getPresetSizes(context, ta);
+            strategy = ta.getInt(R.styleable.AutofitTextView_strategy, strategy);
+            fitHeight = ta.getBoolean(R.styleable.AutofitTextView_fitHeight, fitHeight);
+            probeBreakStrategy = ta.getInt(R.styleable.AutofitTextView_probeBreakStrategy,
+                    probeBreakStrategy);
+            probeHyphenationFrequency = ta.getInt(
+                    R.styleable.AutofitTextView_probeHyphenationFrequency,
+                    probeHyphenationFrequency);
             ta.recycle();
 
             helper.setMinTextSize(TypedValue.COMPLEX_UNIT_PX, minTextSize)
-                .setPrecision(precision);
+                .setPrecision(precision)
+                .setStepGranularity(TypedValue.COMPLEX_UNIT_PX, stepGranularity)
+                .setPresetSizes(TypedValue.COMPLEX_UNIT_PX, presetSizes)
+                .setStrategy(strategy)
+                .setFitHeight(fitHeight)
+                .setProbeBreakStrategy(probeBreakStrategy)
+                .setProbeHyphenationFrequency(probeHyphenationFrequency);
         }
         helper.setEnabled(sizeToFit);
 
@@ -86,122 +204,428 @@ public class AutofitHelper {
     }
 
     /**
-     * Re-sizes the textSize of the TextView so that the text fits within the bounds of the View.
+     * Returns the sizes (in pixels) of the {@code presetSizes} attribute in {@code ta}, or
+     * {@code null} if it isn't set.
      */
-    private static void autofit(TextView view, TextPaint paint, float minTextSize, float maxTextSize,
-            int maxLines, float precision) {
-        if (maxLines <= 0 || maxLines == Integer.MAX_VALUE) {
-            // Don't auto-size since there's no limit on lines.
-            return;
+    static float[] getPresetSizes(Context context, TypedArray ta) {
+        int presetSizesId = ta.getResourceId(R.styleable.AutofitTextView_presetSizes, 0);
+        if (presetSizesId == 0) {
+            return null;
         }
-
-        int targetWidth = view.getWidth() - view.getPaddingLeft() - view.getPaddingRight();
-        if (targetWidth <= 0) {
-            return;
+        TypedArray sizes = context.getResources().obtainTypedArray(presetSizesId);
+        float[] presetSizes = new float[sizes.length()];
+        for (int i = 0; i < presetSizes.length; i++) {
+            presetSizes[i] = sizes.getDimension(i, 0);
         }
+        sizes.recycle();
+        return presetSizes;
+    }
 
-        CharSequence text = view.getText();
-        TransformationMethod method = view.getTransformationMethod();
-        if (method != null) {
-            text = method.getTransformation(text, view);
-        }
+    /**
+     * Returns the best size for {@code text} to fit within the bounds of {@code params}. This
+     * doesn't touch any View, so it may be called from any thread as long as {@code paint} and
+     * {@code measurer} aren't used by another thread at the same time.
+     *
+     * @param paint A copy of the TextView's paint; its text size is overwritten.
+     */
+    static float computeTextSize(CharSequence text, TextPaint paint, AutofitParams params,
+            DisplayMetrics displayMetrics, AutofitMeasurer measurer) {
+        return computeTextSize(text, paint, params, displayMetrics, measurer, 0,
+                params.mMaxTextSize);
+    }
 
-        Context context = view.getContext();
-        Resources r = Resources.getSystem();
-        DisplayMetrics displayMetrics;
+    /**
+     * Returns the best size for {@code text} to fit within the bounds of {@code params}, given
+     * that it is known to be at least {@code low} and at most {@code high}. The text is measured
+     * at {@code high} first, so if it still fits there this costs a single measurement.
+     *
+     * @param low A size the text is known to fit at, or {@code 0}.
+     * @param high A size the best size is known not to exceed, at most the maximum text size.
+     */
+    static float computeTextSize(CharSequence text, TextPaint paint, AutofitParams params,
+            DisplayMetrics displayMetrics, AutofitMeasurer measurer, float low, float high) {
+        float size = high;
+
+        measurer.setText(text);
+        measurer.setLineSpacing(params.mLineSpacingMultiplier, params.mLineSpacingExtra,
+                params.mIncludeFontPadding);
+        measurer.setAdvanceTableEnabled(params.mAdvanceTableEnabled);
+        measurer.setBreakStrategy(params.mProbeBreakStrategy, params.mProbeHyphenationFrequency);
+        measurer.setLayoutForced(false);
+        // Lines broken without a StaticLayout are only approximately the View's.
+        boolean approximateLines = params.mMaxLines != 1 && !measurer.isBreakingWithLayout();
+
+        if (params.mMaxLines > 1 && measurer.getParagraphCount() > params.mMaxLines) {
+            // Each hard line takes up a line of its own at any size, so nothing fits.
+            measurer.clearText();
+            return params.mMinTextSize;
+        }
 
-        float size = maxTextSize;
-        float high = size;
-        float low = 0;
+        if (params.mSizes != null) {
+            size = getDiscreteTextSize(measurer, paint, params, low, high, displayMetrics);
+        } else {
+            paint.setTextSize(size);
+            measurer.measure(paint, params.mTargetWidth, params.mMaxLines);
+
+            if (!fits(measurer, params)) {
+                if (params.mStrategy == STRATEGY_LINEAR && params.mMaxLines == 1
+                        && params.mTargetHeight <= 0) {
+                    size = getLinearTextSize(measurer, paint, params, high, displayMetrics);
+                } else {
+                    size = getAutofitTextSize(measurer, paint, params, Math.min(low, high), high,
+                            displayMetrics);
+                }
+            }
+        }
+        if (size >= params.mMinTextSize && (approximateLines
+                || measurer.isUsingAdvanceTable(paint) || isProbeBreakStrategy(params))) {
+            size = verifyTextSize(measurer, paint, params, size, high, displayMetrics);
+        }
+        measurer.clearText();
 
-        if (context != null) {
-            r = context.getResources();
+        if (size < params.mMinTextSize) {
+            size = params.mMinTextSize;
         }
-        displayMetrics = r.getDisplayMetrics();
+        return size;
+    }
 
-        paint.set(view.getPaint());
-        paint.setTextSize(size);
+    /**
+     * Returns whether the last measurement of {@code measurer} fits within the bounds of
+     * {@code params}.
+     */
+    private static boolean fits(AutofitMeasurer measurer, AutofitParams params) {
+        // More lines than `maxLines` also covers the case that `text` has more newline characters
+        // than `maxLines`.
+        return measurer.getLineCount() <= params.mMaxLines
+                && measurer.getMaxLineWidth() <= params.mTargetWidth
+                && (params.mTargetHeight <= 0 || measurer.getHeight() <= params.mTargetHeight);
+    }
 
-        if ((maxLines == 1 && paint.measureText(text, 0, text.length()) > targetWidth)
-                || getLineCount(text, paint, size, targetWidth, displayMetrics) > maxLines) {
-            size = getAutofitTextSize(text, paint, targetWidth, maxLines, low, high, precision,
-                    displayMetrics);
-        }
+    /**
+     * Finds the best size for the text, between {@code low}, which must fit, and {@code high},
+     * which must not, after narrowing them with bounds derived from the width of the text at
+     * {@code high}. Returns {@code low} right away if the bounds prove nothing larger fits.
+     * {@code measurer} must hold the measurement at {@code high}.
+     */
+    static float getAutofitTextSize(AutofitMeasurer measurer, TextPaint paint,
+            AutofitParams params, float low, float high, DisplayMetrics displayMetrics) {
+        final float targetWidth = params.mTargetWidth;
+        final int targetHeight = params.mTargetHeight;
+        final int maxLines = params.mMaxLines;
+
+        float lowFill = 0;
+        float highFill = measurer.getFill(targetWidth, maxLines, targetHeight);
+
+        // Text widths grow in proportion to the text size, give or take BOUND_MARGIN.
+        if (maxLines == 1) {
+            // A single line fits no larger than where its width shrinks to the target width.
+            float width = measurer.getMaxLineWidth();
+            if (width > 0) {
+                float upper = high * targetWidth / width * (1 + BOUND_MARGIN);
+                if (upper <= Math.max(low, params.mMinTextSize)) {
+                    return low;
+                }
+                if (upper < high) {
+                    highFill *= upper / high;
+                    high = upper;
+                }
+            }
+        } else if (measurer.measureParagraphs(paint)) {
+            float measuredSize = high;
+            float inkWidth = measurer.getInkWidth();
+            float longestWidth = measurer.getLongestParagraphWidth();
+
+            if (inkWidth > 0 && maxLines < Integer.MAX_VALUE) {
+                // The lines share the glyphs, so the text can't fit where they are wider than
+                // maxLines target widths put together.
+                float upper = measuredSize * maxLines * targetWidth / inkWidth * (1 + BOUND_MARGIN);
+                if (upper <= Math.max(low, params.mMinTextSize)) {
+                    return low;
+                }
+                if (upper < high) {
+                    // The fill grows about as fast as the text size.
+                    highFill *= upper / high;
+                    high = upper;
+                }
+            }
 
-        if (size < minTextSize) {
-            size = minTextSize;
+            // With as many hard lines as maxLines none of them wraps, so the text fits once the
+            // widest one does, height aside. The bound is off by the rounding of the advances, so
+            // it is probed rather than taken to fit.
+            if (targetHeight <= 0 && longestWidth > 0
+                    && measurer.getParagraphCount() == maxLines) {
+                float lower = measuredSize * targetWidth / longestWidth * (1 - BOUND_MARGIN);
+                if (lower > low && lower < high) {
+                    paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_PX,
+                            lower, displayMetrics));
+                    measurer.measure(paint, targetWidth, maxLines);
+                    float fill = measurer.getFill(targetWidth, maxLines, targetHeight);
+                    if (fits(measurer, params)) {
+                        low = lower;
+                        lowFill = fill;
+                    } else {
+                        high = lower;
+                        highFill = fill;
+                    }
+                }
+            }
         }
-
-        view.setTextSize(TypedValue.COMPLEX_UNIT_PX, size);
+        return searchTextSize(measurer, paint, params, low, high, lowFill, highFill,
+                displayMetrics);
     }
 
     /**
-     * Recursive binary search to find the best size for the text.
+     * Iterative search to find the best size for the text, between {@code low}, which must fit,
+     * and {@code high}, which must not, where the text fills {@code lowFill} and {@code highFill}
+     * of its bounds.
+     *
+     * Since text width scales almost linearly with text size, so does the number of lines the text
+     * fills, and each probe is interpolated between the ends of the bracket to where the text
+     * just fills its bounds (regula falsi). An end that is kept twice in a row has its value
+     * halved towards the target (Illinois), and probes are kept at least half the precision inside
+     * the bracket, so a good guess is usually confirmed by the next probe. Each probe is a single
+     * measurement, which is checked against the width, lines and height all at once.
      */
-    private static float getAutofitTextSize(CharSequence text, TextPaint paint,
-            float targetWidth, int maxLines, float low, float high, float precision,
+    private static float searchTextSize(AutofitMeasurer measurer, TextPaint paint,
+            AutofitParams params, float low, float high, float lowFill, float highFill,
             DisplayMetrics displayMetrics) {
-        float mid = (low + high) / 2.0f;
-        int lineCount = 1;
-        StaticLayout layout = null;
+        final float targetWidth = params.mTargetWidth;
+        final int targetHeight = params.mTargetHeight;
+        final int maxLines = params.mMaxLines;
+        final float precision = params.mPrecision;
+
+        int lastSide = 0;
+
+        for (int i = 0; i < MAX_ITERATIONS && (high - low) >= precision; i++) {
+            float size;
+            if (lowFill <= 1 && highFill > 1) {
+                size = low + (high - low) * (1 - lowFill) / (highFill - lowFill);
+                size = Math.max(low + precision / 2, Math.min(high - precision / 2, size));
+            } else {
+                size = (low + high) / 2.0f;
+            }
 
-        paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_PX, mid,
-                displayMetrics));
+            paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_PX, size,
+                    displayMetrics));
+            int lineCount = measurer.measure(paint, targetWidth, maxLines);
+            float fill = measurer.getFill(targetWidth, maxLines, targetHeight);
+
+            if (SPEW) Log.d(TAG, "low=" + low + " high=" + high + " size=" + size +
+                    " target=" + targetWidth + "x" + targetHeight + " maxLines=" + maxLines
+                    + " lineCount=" + lineCount + " fill=" + fill);
 
-        if (maxLines != 1) {
-            layout = new StaticLayout(text, paint, (int)targetWidth, Layout.Alignment.ALIGN_NORMAL,
-                    1.0f, 0.0f, true);
-            lineCount = layout.getLineCount();
+            if (!fits(measurer, params)) {
+                high = size;
+                highFill = fill;
+                if (lastSide < 0) {
+                    lowFill = 1 - (1 - lowFill) / 2;
+                }
+                lastSide = -1;
+            } else {
+                low = size;
+                lowFill = fill;
+                if (lastSide > 0) {
+                    highFill = 1 + (highFill - 1) / 2;
+                }
+                lastSide = 1;
+            }
         }
+        return low;
+    }
+
+    /**
+     * Computes the best size for a single line of text from its width at {@code high}, which must
+     * not fit. {@code measurer} must hold the measurement at {@code high}.
+     *
+     * Hinting and rounding make text width slightly non-linear, so each computed size is verified
+     * and corrected from its own measurement. If it still overflows after
+     * {@code MAX_LINEAR_MEASUREMENTS}, the last overflowing size is handed to a search, so the
+     * returned size never overflows.
+     */
+    private static float getLinearTextSize(AutofitMeasurer measurer, TextPaint paint,
+            AutofitParams params, float high, DisplayMetrics displayMetrics) {
+        final float targetWidth = params.mTargetWidth;
+
+        float size = high;
+        for (int i = 0; i < MAX_LINEAR_MEASUREMENTS; i++) {
+            size = size * targetWidth / measurer.getMaxLineWidth();
+            if (i > 0) {
+                // Step past any rounding error that made the last size overflow.
+                size = Math.nextAfter(size, 0);
+            }
 
-        if (SPEW) Log.d(TAG, "low=" + low + " high=" + high + " mid=" + mid +
-                " target=" + targetWidth + " maxLines=" + maxLines + " lineCount=" + lineCount);
+            paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_PX, size,
+                    displayMetrics));
+            measurer.measure(paint, targetWidth, 1);
 
-        if (lineCount > maxLines) {
-            // For the case that `text` has more newline characters than `maxLines`.
-            if ((high - low) < precision) {
-                return low;
+            if (SPEW) Log.d(TAG, "size=" + size + " target=" + targetWidth
+                    + " width=" + measurer.getMaxLineWidth());
+
+            if (measurer.getMaxLineWidth() <= targetWidth) {
+                return size;
             }
-            return getAutofitTextSize(text, paint, targetWidth, maxLines, low, mid, precision,
-                    displayMetrics);
         }
-        else if (lineCount < maxLines) {
-            return getAutofitTextSize(text, paint, targetWidth, maxLines, mid, high, precision,
-                    displayMetrics);
+        return getAutofitTextSize(measurer, paint, params, 0, size, displayMetrics);
+    }
+
+    /**
+     * Search for the largest of the sizes of {@code params} that fits, among those between
+     * {@code low}, which must fit if it is one of them, and {@code high}. Returns {@code 0} if none
+     * of them fits.
+     *
+     * Like {@link #getAutofitTextSize}, each probe is interpolated to where the text just fills
+     * its bounds and then snapped down to one of the sizes, so a good guess is usually confirmed
+     * by probing the next size up, which usually takes fewer probes than a binary search.
+     */
+    private static float getDiscreteTextSize(AutofitMeasurer measurer, TextPaint paint,
+            AutofitParams params, float low, float high, DisplayMetrics displayMetrics) {
+        final float targetWidth = params.mTargetWidth;
+        final int targetHeight = params.mTargetHeight;
+        final int maxLines = params.mMaxLines;
+        final float[] sizes = params.mSizes;
+
+        // Index of the largest size known to fit, or -1
+        int lowIndex = indexOfLargestSize(sizes, low);
+        // Index of the largest size that may fit
+        int highIndex = indexOfLargestSize(sizes, high);
+        if (highIndex < 0) {
+            return 0;
+        }
+        if (lowIndex >= highIndex) {
+            return sizes[highIndex];
+        }
+
+        // Most texts fit at their largest size, so confirm that first.
+        paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_PX, sizes[highIndex],
+                displayMetrics));
+        measurer.measure(paint, targetWidth, maxLines);
+        if (fits(measurer, params)) {
+            return sizes[highIndex];
         }
-        else {
-            float maxLineWidth = 0;
-            if (maxLines == 1) {
-                maxLineWidth = paint.measureText(text, 0, text.length());
+
+        // Ends to interpolate between, which start at nothing and the largest size
+        float lowSize = 0;
+        float lowFill = 0;
+        float highSize = sizes[highIndex];
+        float highFill = measurer.getFill(targetWidth, maxLines, targetHeight);
+        int lastSide = 0;
+
+        while (highIndex - lowIndex > 1) {
+            int index;
+            if (lowFill <= 1 && highFill > 1) {
+                float size = lowSize + (highSize - lowSize) * (1 - lowFill) / (highFill - lowFill);
+                index = indexOfLargestSize(sizes, size);
+                index = Math.max(lowIndex + 1, Math.min(highIndex - 1, index));
             } else {
-                for (int i = 0; i < lineCount; i++) {
-                    if (layout.getLineWidth(i) > maxLineWidth) {
-                        maxLineWidth = layout.getLineWidth(i);
-                    }
-                }
+                index = (lowIndex + highIndex) >>> 1;
             }
 
-            if ((high - low) < precision) {
-                return low;
-            } else if (maxLineWidth > targetWidth) {
-                return getAutofitTextSize(text, paint, targetWidth, maxLines, low, mid, precision,
-                        displayMetrics);
-            } else if (maxLineWidth < targetWidth) {
-                return getAutofitTextSize(text, paint, targetWidth, maxLines, mid, high, precision,
-                        displayMetrics);
+            float size = sizes[index];
+            paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_PX, size,
+                    displayMetrics));
+            measurer.measure(paint, targetWidth, maxLines);
+            float fill = measurer.getFill(targetWidth, maxLines, targetHeight);
+
+            if (SPEW) Log.d(TAG, "low=" + lowSize + " high=" + highSize + " size=" + size
+                    + " fill=" + fill);
+
+            if (!fits(measurer, params)) {
+                highIndex = index;
+                highSize = size;
+                highFill = fill;
+                if (lastSide < 0) {
+                    lowFill = 1 - (1 - lowFill) / 2;
+                }
+                lastSide = -1;
             } else {
-                return mid;
+                lowIndex = index;
+                lowSize = size;
+                lowFill = fill;
+                if (lastSide > 0) {
+                    highFill = 1 + (highFill - 1) / 2;
+                }
+                lastSide = 1;
             }
         }
+        return lowIndex >= 0 ? sizes[lowIndex] : 0;
     }
 
-    private static int getLineCount(CharSequence text, TextPaint paint, float size, float width,
-            DisplayMetrics displayMetrics) {
+    /**
+     * Returns the index of the largest of {@code sizes} that is no larger than {@code size}, or -1
+     * if there is none.
+     */
+    private static int indexOfLargestSize(float[] sizes, float size) {
+        int index = Arrays.binarySearch(sizes, size);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Returns whether the text is broken into lines differently while searching than by its View.
+     */
+    private static boolean isProbeBreakStrategy(AutofitParams params) {
+        return params.mMaxLines != 1 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                && (params.mProbeBreakStrategy != params.mBreakStrategy
+                        || params.mProbeHyphenationFrequency != params.mHyphenationFrequency);
+    }
+
+    /**
+     * Measures {@code size}, which was found with the approximate advances of an
+     * {@link AutofitAdvanceTable}, a probe break strategy or approximate line breaks, with the
+     * paint's own advances and a {@link android.text.StaticLayout} with the View's own break
+     * strategy, and searches below it if it turns out not to fit, or up to {@code high} if the
+     * next size up turns out to fit too.
+     */
+    private static float verifyTextSize(AutofitMeasurer measurer, TextPaint paint,
+            AutofitParams params, float size, float high, DisplayMetrics displayMetrics) {
+        measurer.setAdvanceTableEnabled(false);
+        measurer.setBreakStrategy(params.mBreakStrategy, params.mHyphenationFrequency);
+        measurer.setLayoutForced(true);
+        if (params.mSizes != null) {
+            float verified = getDiscreteTextSize(measurer, paint, params, 0, size,
+                    displayMetrics);
+            if (verified < size) {
+                return verified;
+            }
+            // Table advances leave out kerning, so they tend to overestimate widths.
+            int next = indexOfLargestSize(params.mSizes, size) + 1;
+            if (next >= params.mSizes.length || params.mSizes[next] > high) {
+                return size;
+            }
+            paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_PX,
+                    params.mSizes[next], displayMetrics));
+            measurer.measure(paint, params.mTargetWidth, params.mMaxLines);
+            if (!fits(measurer, params)) {
+                return size;
+            }
+            return getDiscreteTextSize(measurer, paint, params, params.mSizes[next], high,
+                    displayMetrics);
+        }
         paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_PX, size,
                 displayMetrics));
-        StaticLayout layout = new StaticLayout(text, paint, (int)width,
-                Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, true);
-        return layout.getLineCount();
+        measurer.measure(paint, params.mTargetWidth, params.mMaxLines);
+        if (!fits(measurer, params)) {
+            return getAutofitTextSize(measurer, paint, params, 0, size, displayMetrics);
+        }
+
+        // Table advances leave out kerning, so they tend to overestimate widths and the size
+        // found to be too small. One probe a step up tells if it is.
+        float up = size + params.mPrecision;
+        if (up >= high) {
+            return size;
+        }
+        paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_PX, up,
+                displayMetrics));
+        measurer.measure(paint, params.mTargetWidth, params.mMaxLines);
+        if (!fits(measurer, params)) {
+            return size;
+        }
+        paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_PX, high,
+                displayMetrics));
+        measurer.measure(paint, params.mTargetWidth, params.mMaxLines);
+        if (fits(measurer, params)) {
+            return high;
+        }
+        return getAutofitTextSize(measurer, paint, params, up, high, displayMetrics);
     }
 
     private static int getMaxLines(TextView view) {
@@ -221,7 +645,6 @@ public class AutofitHelper {
 
     // Attributes
     private TextView mTextView;
-    private TextPaint mPaint;
     /**
      * Original textSize of the TextView.
      */
@@ -231,29 +654,109 @@ public class AutofitHelper {
     private float mMinTextSize;
     private float mMaxTextSize;
     private float mPrecision;
+    private float mStepGranularity;
+    private float[] mPresetSizes;
+    // Sizes from the minimum to the maximum size by the step granularity, or null if not created
+    private float[] mStepSizes;
+    private int mStrategy;
+    private boolean mFitHeight;
+    private boolean mAdvanceTableEnabled;
+    private int mProbeBreakStrategy = Layout.BREAK_STRATEGY_SIMPLE;
+    private int mProbeHyphenationFrequency = Layout.HYPHENATION_FREQUENCY_NONE;
+    private int mLastMeasureCount;
 
     private boolean mEnabled;
     private boolean mIsAutofitting;
 
-    private ArrayList<OnTextSizeChangeListener> mListeners;
+    // Size of the last fit, or -1 if there is none
+    private float mFittedTextSize = -1;
+    private int mTextChange = TEXT_CHANGE_NONE;
+    // What triggered the next fit, or -1 if nothing did yet
+    private int mTrigger = -1;
+
+    // Inputs the last fit was made against, so layout changes that don't change them can be skipped
+    private int mFittedWidth = -1;
+    private int mFittedPaddingLeft;
+    private int mFittedPaddingRight;
+    private int mFittedMaxLines;
+    // The text size the TextView was left at by the last fit, to tell when it is set from outside
+    private float mFittedViewTextSize;
+    private TransformationMethod mFittedTransformationMethod;
+    private Typeface mFittedTypeface;
+    private int mFittedPaintFlags;
+    private float mFittedTextScaleX;
+    private float mFittedLetterSpacing;
+    private String mFittedFontFeatureSettings;
+    private float mFittedLineSpacingMultiplier;
+    private float mFittedLineSpacingExtra;
+    private boolean mFittedIncludeFontPadding;
+    private int mFittedBreakStrategy;
+    private int mFittedHyphenationFrequency;
+    private int mFittedHeight;
+    private int mFittedPaddingTop;
+    private int mFittedPaddingBottom;
+    private int mSkippedRefitCount;
+
+    private Executor mExecutor;
+    private int mGeneration;
+
+    private boolean mCoalescing;
+    private boolean mAutofitPending;
+    private int mCollapsedTriggerCount;
+    private AutofitPreDrawRequest mPreDrawRequest;
+
+    private AutofitCache mCache;
+
+    // Layout sizing this helper's text together with its siblings, or null to size it on its own
+    private AutofitLayout mGroup;
+    // Layout that created this helper and dispatches the layout changes of its TextView to it, or
+    // null if the helper listens for them itself
+    private final AutofitLayout mOwner;
 
-    private TextWatcher mTextWatcher = new AutofitTextWatcher();
+    private ArrayList<OnTextSizeChangeListener> mListeners;
+    private ArrayList<OnAutofitListener> mAutofitListeners;
+    // Created by the first fit
+    private AutofitMetrics mMetrics;
 
-    private View.OnLayoutChangeListener mOnLayoutChangeListener =
-            new AutofitOnLayoutChangeListener();
+    // Created when first enabled
+    private TextWatcher mTextWatcher;
+    private View.OnLayoutChangeListener mOnLayoutChangeListener;
 
     private AutofitHelper(TextView view) {
+        this(view, null);
+    }
+
+    /**
+     * Creates a new disabled helper for {@code view}, whose layout changes are dispatched to it by
+     * {@code owner} through {@link #onLayoutChange()} rather than by a listener of its own.
+     */
+    AutofitHelper(TextView view, AutofitLayout owner) {
         final Context context = view.getContext();
         float scaledDensity = context.getResources().getDisplayMetrics().scaledDensity;
 
         mTextView = view;
-        mPaint = new TextPaint();
         setRawTextSize(view.getTextSize());
 
         mMaxLines = getMaxLines(view);
         mMinTextSize = scaledDensity * DEFAULT_MIN_TEXT_SIZE;
         mMaxTextSize = mTextSize;
         mPrecision = DEFAULT_PRECISION;
+        mOwner = owner;
+    }
+
+    TextView getTextView() {
+        return mTextView;
+    }
+
+    /**
+     * Set the {@link AutofitLayout} that sizes this helper's text together with its siblings, or
+     * {@code null} to size it on its own. Re-size requests are forwarded to the group.
+     */
+    void setGroup(AutofitLayout group) {
+        if (mGroup != group) {
+            cancelPendingAutofit();
+            mGroup = group;
+        }
     }
 
     /**
@@ -279,6 +782,29 @@ public class AutofitHelper {
         return this;
     }
 
+    /**
+     * Adds an {@link OnAutofitListener} to the list of those whose methods are called after every
+     * fit of the text.
+     */
+    public AutofitHelper addOnAutofitListener(OnAutofitListener listener) {
+        if (mAutofitListeners == null) {
+            mAutofitListeners = new ArrayList<OnAutofitListener>();
+        }
+        mAutofitListeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Removes the specified {@link OnAutofitListener} from the list of those whose methods are
+     * called after every fit of the text.
+     */
+    public AutofitHelper removeOnAutofitListener(OnAutofitListener listener) {
+        if (mAutofitListeners != null) {
+            mAutofitListeners.remove(listener);
+        }
+        return this;
+    }
+
     /**
      * Returns the amount of precision used to calculate the correct text size to fit within its
      * bounds.
@@ -297,148 +823,534 @@ public class AutofitHelper {
         if (mPrecision != precision) {
             mPrecision = precision;
 
-            autofit();
+            requestAutofit();
         }
         return this;
     }
 
     /**
-     * Returns the minimum size (in pixels) of the text.
+     * Returns the strategy used to calculate the correct text size to fit within its bounds.
+     *
+     * @see #STRATEGY_SEARCH
+     * @see #STRATEGY_LINEAR
      */
-    public float getMinTextSize() {
-        return mMinTextSize;
+    public int getStrategy() {
+        return mStrategy;
     }
 
     /**
-     * Set the minimum text size to the given value, interpreted as "scaled pixel" units. This size
-     * is adjusted based on the current density and user font size preference.
+     * Set the strategy used to calculate the correct text size to fit within its bounds.
      *
-     * @param size The scaled pixel size.
+     * @param strategy One of {@link #STRATEGY_SEARCH} or {@link #STRATEGY_LINEAR}.
      *
-     * @attr ref me.grantland.R.styleable#AutofitTextView_minTextSize
+     * @attr ref me.grantland.R.styleable#AutofitTextView_strategy
      */
-    public AutofitHelper setMinTextSize(float size) {
-        return setMinTextSize(TypedValue.COMPLEX_UNIT_SP, size);
+    public AutofitHelper setStrategy(int strategy) {
+        if (strategy != STRATEGY_SEARCH && strategy != STRATEGY_LINEAR) {
+            throw new IllegalArgumentException("Unknown strategy: " + strategy);
+        }
+        if (mStrategy != strategy) {
+            mStrategy = strategy;
+
+            requestAutofit();
+        }
+        return this;
     }
 
     /**
-     * Set the minimum text size to a given unit and value. See TypedValue for the possible
-     * dimension units.
-     *
-     * @param unit The desired dimension unit.
-     * @param size The desired size in the given units.
+     * Returns whether or not the text is also re-sized to fit within the height of the View.
+     */
+    public boolean isFitHeight() {
+        return mFitHeight;
+    }
+
+    /**
+     * Set whether the text is also re-sized to fit within the height of the View, honoring its
+     * line spacing and font padding. When enabled, the number of lines doesn't need to be limited.
+     * This only makes sense if the View's height doesn't depend on its text size. Disabled by
+     * default.
      *
-     * @attr ref me.grantland.R.styleable#AutofitTextView_minTextSize
+     * @attr ref me.grantland.R.styleable#AutofitTextView_fitHeight
      */
-    public AutofitHelper setMinTextSize(int unit, float size) {
-        Context context = mTextView.getContext();
-        Resources r = Resources.getSystem();
+    public AutofitHelper setFitHeight(boolean fitHeight) {
+        if (mFitHeight != fitHeight) {
+            mFitHeight = fitHeight;
 
-        if (context != null) {
-            r = context.getResources();
+            requestAutofit();
         }
-
-        setRawMinTextSize(TypedValue.applyDimension(unit, size, r.getDisplayMetrics()));
         return this;
     }
 
-    private void setRawMinTextSize(float size) {
-        if (size != mMinTextSize) {
-            mMinTextSize = size;
+    /**
+     * Returns whether or not glyph advances are taken from shared tables while fitting.
+     */
+    public boolean isAdvanceTableEnabled() {
+        return mAdvanceTableEnabled;
+    }
 
-            autofit();
+    /**
+     * Set whether glyph advances are taken from tables measured once per typeface and style and
+     * shared by every helper, rather than from the paint on every probe. This makes each probe much
+     * cheaper for text made of Latin characters; other text, text with spans that affect its
+     * metrics and paints with font feature settings are still measured with the paint. The size
+     * found is verified with the paint, so it always fits. Disabled by default.
+     */
+    public AutofitHelper setAdvanceTableEnabled(boolean enabled) {
+        if (mAdvanceTableEnabled != enabled) {
+            mAdvanceTableEnabled = enabled;
+
+            requestAutofit();
         }
+        return this;
     }
 
     /**
-     * Returns the maximum size (in pixels) of the text.
+     * Returns the break strategy used to break text into lines while searching for the size that
+     * fits.
      */
-    public float getMaxTextSize() {
-        return mMaxTextSize;
+    public int getProbeBreakStrategy() {
+        return mProbeBreakStrategy;
     }
 
     /**
-     * Set the maximum text size to the given value, interpreted as "scaled pixel" units. This size
-     * is adjusted based on the current density and user font size preference.
+     * Set the break strategy used to break text into lines while searching for the size that
+     * fits, on android-23+. The size found is measured once more with the View's own break
+     * strategy, and searched below if it doesn't fit, so the text is always sized to what the View
+     * actually lays out; a cheaper strategy than the View's own only makes the search faster.
+     * {@link Layout#BREAK_STRATEGY_SIMPLE}, the cheapest, by default.
      *
-     * @param size The scaled pixel size.
+     * @param breakStrategy One of {@link Layout#BREAK_STRATEGY_SIMPLE},
+     * {@link Layout#BREAK_STRATEGY_HIGH_QUALITY} or {@link Layout#BREAK_STRATEGY_BALANCED}.
      *
-     * @attr ref android.R.styleable#TextView_textSize
+     * @attr ref me.grantland.R.styleable#AutofitTextView_probeBreakStrategy
      */
-    public AutofitHelper setMaxTextSize(float size) {
-        return setMaxTextSize(TypedValue.COMPLEX_UNIT_SP, size);
+    public AutofitHelper setProbeBreakStrategy(int breakStrategy) {
+        if (breakStrategy != Layout.BREAK_STRATEGY_SIMPLE
+                && breakStrategy != Layout.BREAK_STRATEGY_HIGH_QUALITY
+                && breakStrategy != Layout.BREAK_STRATEGY_BALANCED) {
+            throw new IllegalArgumentException("Unknown break strategy: " + breakStrategy);
+        }
+        if (mProbeBreakStrategy != breakStrategy) {
+            mProbeBreakStrategy = breakStrategy;
+
+            requestAutofit();
+        }
+        return this;
     }
 
     /**
-     * Set the maximum text size to a given unit and value. See TypedValue for the possible
-     * dimension units.
+     * Returns the hyphenation frequency used to break text into lines while searching for the size
+     * that fits.
+     */
+    public int getProbeHyphenationFrequency() {
+        return mProbeHyphenationFrequency;
+    }
+
+    /**
+     * Set the hyphenation frequency used to break text into lines while searching for the size
+     * that fits, on android-23+. As with {@link #setProbeBreakStrategy(int)}, the size found is
+     * checked against the View's own hyphenation frequency.
+     * {@link Layout#HYPHENATION_FREQUENCY_NONE}, the cheapest, by default.
      *
-     * @param unit The desired dimension unit.
-     * @param size The desired size in the given units.
+     * @param hyphenationFrequency One of {@link Layout#HYPHENATION_FREQUENCY_NONE},
+     * {@link Layout#HYPHENATION_FREQUENCY_NORMAL} or {@link Layout#HYPHENATION_FREQUENCY_FULL}.
      *
-     * @attr ref android.R.styleable#TextView_textSize
+     * @attr ref me.grantland.R.styleable#AutofitTextView_probeHyphenationFrequency
      */
-    public AutofitHelper setMaxTextSize(int unit, float size) {
-        Context context = mTextView.getContext();
-        Resources r = Resources.getSystem();
-
-        if (context != null) {
-            r = context.getResources();
+    public AutofitHelper setProbeHyphenationFrequency(int hyphenationFrequency) {
+        if (hyphenationFrequency != Layout.HYPHENATION_FREQUENCY_NONE
+                && hyphenationFrequency != Layout.HYPHENATION_FREQUENCY_NORMAL
+                && hyphenationFrequency != Layout.HYPHENATION_FREQUENCY_FULL) {
+            throw new IllegalArgumentException(
+                    "Unknown hyphenation frequency: " + hyphenationFrequency);
         }
+        if (mProbeHyphenationFrequency != hyphenationFrequency) {
+            mProbeHyphenationFrequency = hyphenationFrequency;
 
-        setRawMaxTextSize(TypedValue.applyDimension(unit, size, r.getDisplayMetrics()));
+            requestAutofit();
+        }
         return this;
     }
 
-    private void setRawMaxTextSize(float size) {
-        if (size != mMaxTextSize) {
-            mMaxTextSize = size;
-
-            autofit();
-        }
+    /**
+     * Returns the number of times the text was measured by the last fit, or {@code 0} if it was
+     * found in the cache or didn't need fitting.
+     */
+    public int getLastMeasureCount() {
+        return mLastMeasureCount;
     }
 
     /**
-     * @see TextView#getMaxLines()
+     * Returns whether or not re-sizes are coalesced into a single fit per frame.
      */
-    public int getMaxLines() {
-        return mMaxLines;
+    public boolean isCoalescing() {
+        return mCoalescing;
     }
 
     /**
-     * @see TextView#setMaxLines(int)
+     * Set whether re-sizes are coalesced into a single fit per frame. When enabled, changes to the
+     * text, layout or any of this helper's properties only mark the text as needing a fit, which
+     * happens once right before the next frame is drawn. Disabled by default, in which case each
+     * change re-sizes the text immediately.
      */
-    public AutofitHelper setMaxLines(int lines) {
-        if (mMaxLines != lines) {
-            mMaxLines = lines;
+    public AutofitHelper setCoalescing(boolean coalescing) {
+        if (mCoalescing != coalescing) {
+            mCoalescing = coalescing;
 
-            autofit();
+            if (!coalescing && mAutofitPending) {
+                cancelPendingAutofit();
+                autofit();
+            }
         }
         return this;
     }
 
     /**
-     * Returns whether or not automatically resizing text is enabled.
+     * Returns the number of times a re-size was requested while coalescing and a fit was already
+     * pending, so that it didn't cost a fit of its own.
      */
-    public boolean isEnabled() {
-        return mEnabled;
+    public int getCollapsedTriggerCount() {
+        return mCollapsedTriggerCount;
     }
 
     /**
-     * Set the enabled state of automatically resizing text.
+     * Returns the number of layout changes that didn't re-size the text because they didn't change
+     * any of the bounds or properties the text was last fitted against, or only shrunk the bounds
+     * to ones the text still fits, such as when the helper re-sizing the text re-sized the View.
      */
-    public AutofitHelper setEnabled(boolean enabled) {
-        if (mEnabled != enabled) {
-            mEnabled = enabled;
+    public int getSkippedRefitCount() {
+        return mSkippedRefitCount;
+    }
 
-            if (enabled) {
+    /**
+     * Returns the {@link Executor} fits are computed on, or {@code null} if they are computed on
+     * the main thread.
+     */
+    public Executor getExecutor() {
+        return mExecutor;
+    }
+
+    /**
+     * Set the {@link Executor} to compute fits on, such as
+     * {@link android.os.AsyncTask#THREAD_POOL_EXECUTOR}, or {@code null} to compute them on the
+     * main thread, which is the default.
+     *
+     * When set, each fit is computed in the background from a snapshot of the text, paint and
+     * bounds, and the TextView keeps its current text size until the result is applied on the main
+     * thread. A result is dropped if another fit was started in the meantime. Sizes found in the
+     * {@link AutofitCache} are still applied immediately.
+     *
+     * @param executor The executor to use.
+     */
+    public AutofitHelper setExecutor(Executor executor) {
+        mExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Returns the minimum size (in pixels) of the text.
+     */
+    public float getMinTextSize() {
+        return mMinTextSize;
+    }
+
+    /**
+     * Set the minimum text size to the given value, interpreted as "scaled pixel" units. This size
+     * is adjusted based on the current density and user font size preference.
+     *
+     * @param size The scaled pixel size.
+     *
+     * @attr ref me.grantland.R.styleable#AutofitTextView_minTextSize
+     */
+    public AutofitHelper setMinTextSize(float size) {
+        return setMinTextSize(TypedValue.COMPLEX_UNIT_SP, size);
+    }
+
+    /**
+     * Set the minimum text size to a given unit and value. See TypedValue for the possible
+     * dimension units.
+     *
+     * @param unit The desired dimension unit.
+     * @param size The desired size in the given units.
+     *
+     * @attr ref me.grantland.R.styleable#AutofitTextView_minTextSize
+     */
+    public AutofitHelper setMinTextSize(int unit, float size) {
+        Context context = mTextView.getContext();
+        Resources r = Resources.getSystem();
+
+        if (context != null) {
+            r = context.getResources();
+        }
+
+        setRawMinTextSize(TypedValue.applyDimension(unit, size, r.getDisplayMetrics()));
+        return this;
+    }
+
+    private void setRawMinTextSize(float size) {
+        if (size != mMinTextSize) {
+            mMinTextSize = size;
+            mStepSizes = null;
+
+            requestAutofit();
+        }
+    }
+
+    /**
+     * Returns the maximum size (in pixels) of the text.
+     */
+    public float getMaxTextSize() {
+        return mMaxTextSize;
+    }
+
+    /**
+     * Set the maximum text size to the given value, interpreted as "scaled pixel" units. This size
+     * is adjusted based on the current density and user font size preference.
+     *
+     * @param size The scaled pixel size.
+     *
+     * @attr ref android.R.styleable#TextView_textSize
+     */
+    public AutofitHelper setMaxTextSize(float size) {
+        return setMaxTextSize(TypedValue.COMPLEX_UNIT_SP, size);
+    }
+
+    /**
+     * Set the maximum text size to a given unit and value. See TypedValue for the possible
+     * dimension units.
+     *
+     * @param unit The desired dimension unit.
+     * @param size The desired size in the given units.
+     *
+     * @attr ref android.R.styleable#TextView_textSize
+     */
+    public AutofitHelper setMaxTextSize(int unit, float size) {
+        Context context = mTextView.getContext();
+        Resources r = Resources.getSystem();
+
+        if (context != null) {
+            r = context.getResources();
+        }
+
+        setRawMaxTextSize(TypedValue.applyDimension(unit, size, r.getDisplayMetrics()));
+        return this;
+    }
+
+    private void setRawMaxTextSize(float size) {
+        if (size != mMaxTextSize) {
+            mMaxTextSize = size;
+            mStepSizes = null;
+
+            requestAutofit();
+        }
+    }
+
+    /**
+     * Returns the step granularity (in pixels) of the text size, or {@code 0} if the text may be
+     * any size.
+     */
+    public float getStepGranularity() {
+        return mStepGranularity;
+    }
+
+    /**
+     * Set the step granularity of the text size to the given value, interpreted as "scaled pixel"
+     * units. This size is adjusted based on the current density and user font size preference.
+     *
+     * @param size The scaled pixel size.
+     *
+     * @attr ref me.grantland.R.styleable#AutofitTextView_stepGranularity
+     */
+    public AutofitHelper setStepGranularity(float size) {
+        return setStepGranularity(TypedValue.COMPLEX_UNIT_SP, size);
+    }
+
+    /**
+     * Set the step granularity of the text size to a given unit and value. The text is then only
+     * sized to the minimum text size plus a multiple of the step, up to the maximum text size,
+     * instead of any size to within the precision. This takes about log2 of the number of steps
+     * measurements, and the few distinct sizes are easy on the renderer's glyph cache and on the
+     * {@link AutofitCache}. Pass {@code 0} to allow any size again, which is the default. Ignored
+     * if preset sizes are set. See TypedValue for the possible dimension units.
+     *
+     * @param unit The desired dimension unit.
+     * @param size The desired size in the given units.
+     *
+     * @attr ref me.grantland.R.styleable#AutofitTextView_stepGranularity
+     */
+    public AutofitHelper setStepGranularity(int unit, float size) {
+        Context context = mTextView.getContext();
+        Resources r = Resources.getSystem();
+
+        if (context != null) {
+            r = context.getResources();
+        }
+
+        size = size > 0 ? TypedValue.applyDimension(unit, size, r.getDisplayMetrics()) : 0;
+        if (mStepGranularity != size) {
+            mStepGranularity = size;
+            mStepSizes = null;
+
+            requestAutofit();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the sizes (in pixels) the text may be sized to in ascending order, or {@code null}
+     * if there are none.
+     */
+    public float[] getPresetSizes() {
+        return mPresetSizes != null ? mPresetSizes.clone() : null;
+    }
+
+    /**
+     * Set the sizes the text may be sized to, in a given unit. The text is then sized to the
+     * largest of them that fits, or the smallest if none does, regardless of the minimum and
+     * maximum text size and the step granularity. This takes about log2 of the number of sizes
+     * measurements. Pass {@code null} or an empty array to clear them, which is the default. See
+     * TypedValue for the possible dimension units.
+     *
+     * @param unit The desired dimension unit.
+     * @param sizes The desired sizes in the given units, in any order.
+     *
+     * @attr ref me.grantland.R.styleable#AutofitTextView_presetSizes
+     */
+    public AutofitHelper setPresetSizes(int unit, float[] sizes) {
+        Context context = mTextView.getContext();
+        Resources r = Resources.getSystem();
+
+        if (context != null) {
+            r = context.getResources();
+        }
+
+        float[] presetSizes = null;
+        if (sizes != null && sizes.length > 0) {
+            presetSizes = new float[sizes.length];
+            for (int i = 0; i < sizes.length; i++) {
+                presetSizes[i] = TypedValue.applyDimension(unit, sizes[i], r.getDisplayMetrics());
+            }
+            Arrays.sort(presetSizes);
+        }
+        if (!Arrays.equals(mPresetSizes, presetSizes)) {
+            mPresetSizes = presetSizes;
+
+            requestAutofit();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the sorted sizes (in pixels) the text may be sized to, or {@code null} if it may be
+     * any size. The returned array must not be modified.
+     */
+    float[] getSizes() {
+        if (mPresetSizes != null) {
+            return mPresetSizes;
+        }
+        if (mStepGranularity <= 0) {
+            return null;
+        }
+        if (mStepSizes == null) {
+            int count = Math.max(0, (int) ((mMaxTextSize - mMinTextSize) / mStepGranularity)) + 1;
+            float[] sizes = new float[count];
+            for (int i = 0; i < count; i++) {
+                sizes[i] = mMinTextSize + i * mStepGranularity;
+            }
+            mStepSizes = sizes;
+        }
+        return mStepSizes;
+    }
+
+    /**
+     * @see TextView#getMaxLines()
+     */
+    public int getMaxLines() {
+        return mMaxLines;
+    }
+
+    /**
+     * @see TextView#setMaxLines(int)
+     */
+    public AutofitHelper setMaxLines(int lines) {
+        if (mMaxLines != lines) {
+            mMaxLines = lines;
+
+            requestAutofit();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the {@link AutofitCache} set on this helper, or {@code null} if it uses the
+     * {@link AutofitCache#getSharedCache() shared cache}.
+     */
+    public AutofitCache getCache() {
+        return mCache;
+    }
+
+    /**
+     * Set the {@link AutofitCache} used to look up previously fitted sizes, or {@code null} to
+     * fall back to the {@link AutofitCache#getSharedCache() shared cache}. If neither is set,
+     * caching is disabled, which is the default.
+     *
+     * @param cache The cache to use.
+     */
+    public AutofitHelper setCache(AutofitCache cache) {
+        mCache = cache;
+        return this;
+    }
+
+    /**
+     * Removes all the fitted sizes from the {@link AutofitCache} used by this helper and re-sizes
+     * the text. Call this after a configuration or font change that isn't reflected in the
+     * {@link TextView}'s paint.
+     */
+    public AutofitHelper invalidateCache() {
+        AutofitCache cache = getEffectiveCache();
+        if (cache != null) {
+            cache.invalidate();
+        }
+        requestAutofit();
+        return this;
+    }
+
+    /**
+     * Returns whether or not automatically resizing text is enabled.
+     */
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Set the enabled state of automatically resizing text.
+     */
+    public AutofitHelper setEnabled(boolean enabled) {
+        if (mEnabled != enabled) {
+            mEnabled = enabled;
+
+            if (enabled) {
+                if (mTextWatcher == null) {
+                    mTextWatcher = new AutofitTextWatcher();
+                }
                 mTextView.addTextChangedListener(mTextWatcher);
-                mTextView.addOnLayoutChangeListener(mOnLayoutChangeListener);
+                if (mOwner == null) {
+                    if (mOnLayoutChangeListener == null) {
+                        mOnLayoutChangeListener = new AutofitOnLayoutChangeListener();
+                    }
+                    mTextView.addOnLayoutChangeListener(mOnLayoutChangeListener);
+                }
 
-                autofit();
+                requestAutofit();
             } else {
                 mTextView.removeTextChangedListener(mTextWatcher);
-                mTextView.removeOnLayoutChangeListener(mOnLayoutChangeListener);
+                if (mOwner == null) {
+                    mTextView.removeOnLayoutChangeListener(mOnLayoutChangeListener);
+                }
+                cancelPendingAutofit();
+                mGeneration++;
+                mTrigger = -1;
+                mTextChange = TEXT_CHANGE_NONE;
 
                 mTextView.setTextSize(TypedValue.COMPLEX_UNIT_PX, mTextSize);
             }
@@ -491,17 +1403,426 @@ public class AutofitHelper {
         }
     }
 
+    private AutofitCache getEffectiveCache() {
+        return mCache != null ? mCache : AutofitCache.getSharedCache();
+    }
+
+    /**
+     * Re-sizes the text now, or before the next frame is drawn if coalescing. If the helper belongs
+     * to a group, the whole group is re-sized instead. Does nothing while disabled, since enabling
+     * the helper re-sizes the text anyway.
+     */
+    void requestAutofit() {
+        requestAutofit(AutofitMetrics.TRIGGER_PROPERTY, TEXT_CHANGE_UNKNOWN);
+    }
+
+    private void requestAutofit(int trigger, int textChange) {
+        if (!mEnabled) {
+            return;
+        }
+        if (mTrigger < 0) {
+            mTrigger = trigger;
+        }
+
+        // Only a single kind of text change since the last fit bounds the next one.
+        if (mTextChange != TEXT_CHANGE_NONE && mTextChange != textChange) {
+            textChange = TEXT_CHANGE_UNKNOWN;
+        }
+        mTextChange = textChange;
+
+        if (mGroup != null) {
+            mGroup.requestGroupAutofit();
+            return;
+        }
+        if (!mCoalescing) {
+            autofit();
+            return;
+        }
+        if (mAutofitPending) {
+            mCollapsedTriggerCount++;
+            return;
+        }
+
+        if (mPreDrawRequest == null) {
+            mPreDrawRequest = new AutofitPreDrawRequest(mTextView,
+                    new AutofitOnPreDrawListener());
+        }
+        mAutofitPending = true;
+        mPreDrawRequest.request();
+    }
+
+    private void cancelPendingAutofit() {
+        if (mAutofitPending) {
+            mAutofitPending = false;
+            mPreDrawRequest.cancel();
+        }
+    }
+
+    /**
+     * Re-sizes the textSize of the TextView so that the text fits within the bounds of the View.
+     */
     private void autofit() {
+        float size = computeAutofitTextSize(Float.MAX_VALUE, mExecutor);
+        if (size >= 0) {
+            sendAutofit(applyTextSize(size));
+        }
+    }
+
+    /**
+     * Returns the best size for the text to fit within the bounds of the View, but no larger than
+     * {@code maxTextSize} on top of the helper's own bounds, without applying it. Returns
+     * {@code -1} if the text doesn't need fitting, or if the fit was handed to {@code executor} to
+     * be applied when it completes.
+     */
+    float computeAutofitTextSize(float maxTextSize, Executor executor) {
+        AutofitMetrics metrics = getMetrics();
+        metrics.mTrigger = mTrigger >= 0 ? mTrigger
+                : mGroup != null ? AutofitMetrics.TRIGGER_GROUP : AutofitMetrics.TRIGGER_PROPERTY;
+        mTrigger = -1;
+        metrics.mProbeCount = 0;
+
+        AutofitTrace.beginFit(metrics.mTrigger, false);
+        try {
+            return computeAutofitTextSize(metrics, maxTextSize, executor);
+        } finally {
+            // The scratch space outlives the fit, so it mustn't keep the text or the state of the
+            // paint, and through them the View, alive.
+            Scratch scratch = getScratch();
+            scratch.mCacheKey.clearText();
+            scratch.mPaint.reset();
+            AutofitTrace.endFit(metrics.mProbeCount);
+        }
+    }
+
+    private float computeAutofitTextSize(AutofitMetrics metrics, float maxTextSize,
+            Executor executor) {
+        TextView view = mTextView;
+        long startTime = System.nanoTime();
+
+        // The last fit bounds this one if only the text changed since, and only in one direction.
+        int textChange = mTextChange;
+        float fittedTextSize = mFittedTextSize;
+        if (mGroup != null || fittedTextSize < 0 || isFitStale()) {
+            textChange = TEXT_CHANGE_UNKNOWN;
+        }
+        mTextChange = TEXT_CHANGE_NONE;
+        mFittedTextSize = -1;
+
+        // Any fit still running in the background is now out of date.
+        mGeneration++;
+        mLastMeasureCount = 0;
+        recordFittedInputs();
+
+        int maxLines = mMaxLines;
+        if (maxLines <= 0 || maxLines == Integer.MAX_VALUE) {
+            if (!mFitHeight) {
+                // Don't auto-size since there's no limit on lines.
+                return -1;
+            }
+            maxLines = Integer.MAX_VALUE;
+        }
+
+        int targetWidth = view.getWidth() - view.getPaddingLeft() - view.getPaddingRight();
+        if (targetWidth <= 0) {
+            return -1;
+        }
+
+        int targetHeight = 0;
+        if (mFitHeight) {
+            targetHeight = view.getHeight() - view.getPaddingTop() - view.getPaddingBottom();
+            if (targetHeight <= 0) {
+                return -1;
+            }
+        }
+
+        CharSequence text = view.getText();
+        TransformationMethod method = view.getTransformationMethod();
+        if (method != null) {
+            text = method.getTransformation(text, view);
+        }
+        metrics.mTextLength = text.length();
+        metrics.mTargetWidth = targetWidth;
+        metrics.mMaxLines = maxLines;
+
+        Context context = view.getContext();
+        Resources r = Resources.getSystem();
+        DisplayMetrics displayMetrics;
+
+        if (context != null) {
+            r = context.getResources();
+        }
+        displayMetrics = r.getDisplayMetrics();
+
+        Scratch scratch = getScratch();
+        TextPaint paint = scratch.mPaint;
+        paint.set(view.getPaint());
+
+        AutofitParams params = scratch.mParams;
+        params.mTargetWidth = targetWidth;
+        params.mTargetHeight = targetHeight;
+        params.mMaxLines = maxLines;
+        params.mMinTextSize = mMinTextSize;
+        params.mMaxTextSize = Math.min(mMaxTextSize, maxTextSize);
+        float[] sizes = getSizes();
+        params.mSizes = sizes;
+        if (sizes != null) {
+            params.mMinTextSize = sizes[0];
+            params.mMaxTextSize = Math.min(sizes[sizes.length - 1], maxTextSize);
+        }
+        params.mPrecision = mPrecision;
+        params.mStrategy = mStrategy;
+        params.mAdvanceTableEnabled = mAdvanceTableEnabled;
+        params.mProbeBreakStrategy = mProbeBreakStrategy;
+        params.mProbeHyphenationFrequency = mProbeHyphenationFrequency;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            // getBreakStrategy() and getHyphenationFrequency() are only available on android-23+
+            params.mBreakStrategy = view.getBreakStrategy();
+            params.mHyphenationFrequency = view.getHyphenationFrequency();
+        }
+        if (mFitHeight && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            // getLineSpacingMultiplier(), getLineSpacingExtra() and getIncludeFontPadding() are
+            // only available on android-16+
+            params.mLineSpacingMultiplier = view.getLineSpacingMultiplier();
+            params.mLineSpacingExtra = view.getLineSpacingExtra();
+            params.mIncludeFontPadding = view.getIncludeFontPadding();
+        } else {
+            params.mLineSpacingMultiplier = 1.0f;
+            params.mLineSpacingExtra = 0.0f;
+            params.mIncludeFontPadding = true;
+        }
+
+        AutofitCache cache = getEffectiveCache();
+        AutofitCache.Key cacheKey = null;
+        if (cache != null && AutofitCache.isCacheable(text)) {
+            cacheKey = scratch.mCacheKey.set(text, paint, params);
+            float cachedSize = cache.get(cacheKey);
+            if (cachedSize >= 0) {
+                mFittedTextSize = cachedSize;
+                setMetrics(true, false, 0, 0, 0, System.nanoTime() - startTime);
+                return cachedSize;
+            }
+        }
+
+        float low = 0;
+        float high = params.mMaxTextSize;
+        if (textChange == TEXT_CHANGE_INSERTION) {
+            high = Math.min(high, fittedTextSize);
+        } else if (textChange == TEXT_CHANGE_DELETION && fittedTextSize > params.mMinTextSize) {
+            // A size at the minimum may have been clamped up to it, so only a larger one is known
+            // to fit.
+            low = Math.min(high, fittedTextSize);
+        }
+
+        if (executor != null) {
+            executor.execute(new AutofitTask(text, paint, params, displayMetrics, cache,
+                    cacheKey != null ? cacheKey.copy() : null, low, high));
+            return -1;
+        }
+
+        AutofitMeasurer measurer = scratch.mMeasurer;
+        measurer.resetMeasureCount();
+        float size = computeTextSize(text, paint, params, displayMetrics, measurer, low, high);
+        mLastMeasureCount = measurer.getMeasureCount();
+        setMetrics(false, false, measurer.getMeasureCount(), measurer.getLayoutCount(),
+                measurer.getPaintMeasureCount(), System.nanoTime() - startTime);
+
+        if (cacheKey != null) {
+            cache.put(cacheKey, size);
+        }
+        mFittedTextSize = size;
+        return size;
+    }
+
+    /**
+     * Sets the text size of the TextView and returns whether it changed. Sizes within a fraction
+     * of a pixel of the current one are ignored, since they'd cost a layout for no visible change.
+     */
+    boolean applyTextSize(float size) {
         float oldTextSize = mTextView.getTextSize();
         float textSize;
 
+        if (Math.abs(size - oldTextSize) < TEXT_SIZE_EPSILON) {
+            mFittedViewTextSize = oldTextSize;
+            return false;
+        }
+
         mIsAutofitting = true;
-        autofit(mTextView, mPaint, mMinTextSize, mMaxTextSize, mMaxLines, mPrecision);
+        mTextView.setTextSize(TypedValue.COMPLEX_UNIT_PX, size);
         mIsAutofitting = false;
 
         textSize = mTextView.getTextSize();
+        mFittedViewTextSize = textSize;
         if (textSize != oldTextSize) {
             sendTextSizeChange(textSize, oldTextSize);
+            return true;
+        }
+        return false;
+    }
+
+    private AutofitMetrics getMetrics() {
+        if (mMetrics == null) {
+            mMetrics = new AutofitMetrics();
+        }
+        return mMetrics;
+    }
+
+    private void setMetrics(boolean cacheHit, boolean async, int probeCount, int layoutCount,
+            int paintMeasureCount, long elapsedNanos) {
+        AutofitMetrics metrics = getMetrics();
+        metrics.mCacheHit = cacheHit;
+        metrics.mAsync = async;
+        metrics.mProbeCount = probeCount;
+        metrics.mLayoutCount = layoutCount;
+        metrics.mPaintMeasureCount = paintMeasureCount;
+        metrics.mElapsedNanos = elapsedNanos;
+    }
+
+    private void recordFittedInputs() {
+        TextView view = mTextView;
+        TextPaint paint = view.getPaint();
+        mFittedWidth = view.getWidth();
+        mFittedPaddingLeft = view.getPaddingLeft();
+        mFittedPaddingRight = view.getPaddingRight();
+        mFittedMaxLines = mMaxLines;
+        mFittedViewTextSize = view.getTextSize();
+        mFittedTransformationMethod = view.getTransformationMethod();
+        mFittedTypeface = paint.getTypeface();
+        mFittedPaintFlags = paint.getFlags();
+        mFittedTextScaleX = paint.getTextScaleX();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            // getLetterSpacing() and getFontFeatureSettings() are only available on android-21+
+            mFittedLetterSpacing = paint.getLetterSpacing();
+            mFittedFontFeatureSettings = paint.getFontFeatureSettings();
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            // getLineSpacingMultiplier(), getLineSpacingExtra() and getIncludeFontPadding() are
+            // only available on android-16+
+            mFittedLineSpacingMultiplier = view.getLineSpacingMultiplier();
+            mFittedLineSpacingExtra = view.getLineSpacingExtra();
+            mFittedIncludeFontPadding = view.getIncludeFontPadding();
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            // getBreakStrategy() and getHyphenationFrequency() are only available on android-23+
+            mFittedBreakStrategy = view.getBreakStrategy();
+            mFittedHyphenationFrequency = view.getHyphenationFrequency();
+        }
+        mFittedHeight = view.getHeight();
+        mFittedPaddingTop = view.getPaddingTop();
+        mFittedPaddingBottom = view.getPaddingBottom();
+    }
+
+    /**
+     * Returns whether the size of the last fit is still the one a new fit would find, because only
+     * the bounds changed since, none of them grew, and the TextView's layout shows that the text
+     * still fits them at that size. The largest size that fits can't grow when the bounds shrink,
+     * so it is still the largest, whatever shrunk them.
+     */
+    private boolean isStillFitted() {
+        TextView view = mTextView;
+        Layout layout = view.getLayout();
+        // A fit still running in the background leaves no fitted size.
+        if (layout == null || mFittedTextSize < 0
+                || Math.abs(view.getTextSize() - mFittedTextSize) >= TEXT_SIZE_EPSILON
+                || isFittedPropertyStale()) {
+            return false;
+        }
+
+        int width = view.getWidth() - view.getPaddingLeft() - view.getPaddingRight();
+        if (width > mFittedWidth - mFittedPaddingLeft - mFittedPaddingRight) {
+            return false;
+        }
+        int height = view.getHeight() - view.getPaddingTop() - view.getPaddingBottom();
+        if (mFitHeight && (height > mFittedHeight - mFittedPaddingTop - mFittedPaddingBottom
+                || layout.getHeight() > height)) {
+            return false;
+        }
+
+        int lineCount = layout.getLineCount();
+        if (lineCount > mMaxLines || layout.getEllipsisCount(lineCount - 1) > 0) {
+            return false;
+        }
+        for (int i = 0; i < lineCount; i++) {
+            if (layout.getLineWidth(i) > width) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether any of the bounds or properties the text was last fitted against, other than
+     * the text itself, changed since.
+     */
+    private boolean isFitStale() {
+        return mFittedWidth != mTextView.getWidth()
+                || mFittedPaddingLeft != mTextView.getPaddingLeft()
+                || mFittedPaddingRight != mTextView.getPaddingRight()
+                || (mFitHeight && (mFittedHeight != mTextView.getHeight()
+                        || mFittedPaddingTop != mTextView.getPaddingTop()
+                        || mFittedPaddingBottom != mTextView.getPaddingBottom()))
+                || isFittedPropertyStale();
+    }
+
+    /**
+     * Returns whether any of the properties of the TextView or its paint that the text was last
+     * fitted against, other than the text and the bounds, changed since.
+     */
+    private boolean isFittedPropertyStale() {
+        TextView view = mTextView;
+        TextPaint paint = view.getPaint();
+        // The text size is only ever set from outside, such as by setTextAppearance(), since the
+        // helper's own sizes are recorded as they are applied.
+        if (mFittedMaxLines != mMaxLines
+                || mFittedViewTextSize != view.getTextSize()
+                || mFittedTransformationMethod != view.getTransformationMethod()
+                || mFittedTypeface != paint.getTypeface()
+                || mFittedPaintFlags != paint.getFlags()
+                || mFittedTextScaleX != paint.getTextScaleX()) {
+            return true;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                && (mFittedLetterSpacing != paint.getLetterSpacing()
+                        || !TextUtils.equals(mFittedFontFeatureSettings,
+                                paint.getFontFeatureSettings()))) {
+            return true;
+        }
+        // Line spacing and font padding only change the height of the text.
+        if (mFitHeight && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                && (mFittedLineSpacingMultiplier != view.getLineSpacingMultiplier()
+                        || mFittedLineSpacingExtra != view.getLineSpacingExtra()
+                        || mFittedIncludeFontPadding != view.getIncludeFontPadding())) {
+            return true;
+        }
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                && (mFittedBreakStrategy != view.getBreakStrategy()
+                        || mFittedHyphenationFrequency != view.getHyphenationFrequency());
+    }
+
+    /**
+     * Notifies the listeners of the fit whose size was just applied.
+     */
+    void sendAutofit(boolean textSizeChanged) {
+        OnAutofitListener globalListener = sGlobalOnAutofitListener;
+        OnFitBudgetExceededListener budgetListener = sOnFitBudgetExceededListener;
+        AutofitMetrics metrics = getMetrics();
+        boolean overBudget = budgetListener != null && metrics.mElapsedNanos > sFitBudgetNanos;
+        if (globalListener == null && !overBudget
+                && (mAutofitListeners == null || mAutofitListeners.isEmpty())) {
+            return;
+        }
+
+        metrics.mTextSize = mTextView.getTextSize();
+        metrics.mTextSizeChanged = textSizeChanged;
+        if (mAutofitListeners != null) {
+            for (OnAutofitListener listener : mAutofitListeners) {
+                listener.onAutofit(this, metrics);
+            }
+        }
+        if (globalListener != null) {
+            globalListener.onAutofit(this, metrics);
+        }
+        if (overBudget) {
+            budgetListener.onFitBudgetExceeded(this, metrics);
         }
     }
 
@@ -515,15 +1836,44 @@ public class AutofitHelper {
         }
     }
 
+    /**
+     * Returns whether inserting or deleting {@code text} between {@code start} and {@code end} can
+     * only make the text wider, or narrower, without changing where lines may break.
+     */
+    private boolean isMonotonicChange(CharSequence text, int start, int end) {
+        if (mMaxLines == 1) {
+            return true;
+        }
+        for (int i = start; i < end; i++) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private class AutofitTextWatcher implements TextWatcher {
+        // Whether the characters about to be deleted can only make the text narrower
+        private boolean mMonotonicDeletion;
+
         @Override
         public void beforeTextChanged(CharSequence charSequence, int start, int count, int after) {
-            // do nothing
+            mMonotonicDeletion = after == 0 && count > 0
+                    && isMonotonicChange(charSequence, start, start + count);
         }
 
         @Override
         public void onTextChanged(CharSequence charSequence, int start, int before, int count) {
-            autofit();
+            int textChange = TEXT_CHANGE_UNKNOWN;
+            if (before == 0 && count > 0) {
+                if (isMonotonicChange(charSequence, start, start + count)) {
+                    textChange = TEXT_CHANGE_INSERTION;
+                }
+            } else if (count == 0 && mMonotonicDeletion) {
+                textChange = TEXT_CHANGE_DELETION;
+            }
+            mMonotonicDeletion = false;
+            requestAutofit(AutofitMetrics.TRIGGER_TEXT, textChange);
         }
 
         @Override
@@ -532,11 +1882,140 @@ public class AutofitHelper {
         }
     }
 
+    /**
+     * Re-sizes the text if the TextView was just laid out to bounds it no longer fits. Must only
+     * be called while enabled.
+     */
+    void onLayoutChange() {
+        if (!isFitStale()) {
+            // Moved or changed height only, so the text still fits.
+            mSkippedRefitCount++;
+            return;
+        }
+        if (isStillFitted()) {
+            // Shrunk around the fitted text, such as by the layout that applying it requested.
+            mSkippedRefitCount++;
+            recordFittedInputs();
+            return;
+        }
+        requestAutofit(AutofitMetrics.TRIGGER_LAYOUT, TEXT_CHANGE_UNKNOWN);
+    }
+
     private class AutofitOnLayoutChangeListener implements View.OnLayoutChangeListener {
         @Override
         public void onLayoutChange(View view, int left, int top, int right, int bottom,
                 int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            AutofitHelper.this.onLayoutChange();
+        }
+    }
+
+    /**
+     * Computes a fit in the background from a snapshot of its inputs, then applies it on the main
+     * thread unless the helper has started another fit since.
+     */
+    private class AutofitTask implements Runnable {
+        private final int mTaskGeneration = mGeneration;
+        private final int mTaskTrigger = getMetrics().mTrigger;
+        private final CharSequence mTaskText;
+        private final TextPaint mTaskPaint;
+        private final AutofitParams mTaskParams;
+        private final DisplayMetrics mTaskDisplayMetrics;
+        private final AutofitCache mTaskCache;
+        private final AutofitCache.Key mTaskCacheKey;
+        private final float mLow;
+        private final float mHigh;
+
+        private float mSize;
+        private int mMeasureCount;
+        private int mLayoutCount;
+        private int mPaintMeasureCount;
+        private long mElapsedNanos;
+        // Whether the size was computed and the task was posted back to the main thread to apply
+        // it. The executor may run the task on any thread, the main thread included, so the phase
+        // can't be told from the calling thread.
+        private boolean mComputed;
+
+        AutofitTask(CharSequence text, TextPaint paint, AutofitParams params,
+                DisplayMetrics displayMetrics, AutofitCache cache, AutofitCache.Key cacheKey,
+                float low, float high) {
+            // The TextView's text may be mutable, so take a copy that keeps any spans. The paint
+            // and params are scratch space of the main thread, so take copies of them too.
+            mTaskText = text instanceof Spanned ? new SpannedString(text) : text.toString();
+            mTaskPaint = new TextPaint(paint);
+            mTaskParams = params.copy();
+            mTaskDisplayMetrics = displayMetrics;
+            mTaskCache = cache;
+            mTaskCacheKey = cacheKey;
+            mLow = low;
+            mHigh = high;
+        }
+
+        @Override
+        public void run() {
+            if (mComputed) {
+                // Back on the main thread with the result.
+                if (mTaskGeneration == mGeneration) {
+                    mLastMeasureCount = mMeasureCount;
+                    mFittedTextSize = mSize;
+                    setMetrics(false, true, mMeasureCount, mLayoutCount, mPaintMeasureCount,
+                            mElapsedNanos);
+                    sendAutofit(applyTextSize(mSize));
+                }
+                return;
+            }
+
+            long startTime = System.nanoTime();
+            AutofitMeasurer measurer = getScratch().mMeasurer;
+            measurer.resetMeasureCount();
+            AutofitTrace.beginFit(mTaskTrigger, true);
+            try {
+                mSize = computeTextSize(mTaskText, mTaskPaint, mTaskParams, mTaskDisplayMetrics,
+                        measurer, mLow, mHigh);
+            } finally {
+                AutofitTrace.endFit(measurer.getMeasureCount());
+            }
+            mMeasureCount = measurer.getMeasureCount();
+            mLayoutCount = measurer.getLayoutCount();
+            mPaintMeasureCount = measurer.getPaintMeasureCount();
+            mElapsedNanos = System.nanoTime() - startTime;
+            if (mTaskCacheKey != null) {
+                mTaskCache.put(mTaskCacheKey, mSize);
+            }
+            mComputed = true;
+            sMainHandler.post(this);
+        }
+    }
+
+    /**
+     * Returns the scratch space for fits on the calling thread.
+     */
+    static Scratch getScratch() {
+        return sScratch.get();
+    }
+
+    /**
+     * Objects that are only used for the duration of a fit, so that helpers don't each hold on to
+     * their own. They must not reference the text or View of a fit once it is done.
+     */
+    static final class Scratch {
+        final TextPaint mPaint = new TextPaint();
+        final AutofitMeasurer mMeasurer = new AutofitMeasurer();
+        final AutofitParams mParams = new AutofitParams();
+        final AutofitCache.Key mCacheKey = new AutofitCache.Key();
+    }
+
+    private class AutofitOnPreDrawListener implements ViewTreeObserver.OnPreDrawListener {
+        @Override
+        public boolean onPreDraw() {
+            if (!mAutofitPending) {
+                return true;
+            }
+            float oldTextSize = mTextView.getTextSize();
+            cancelPendingAutofit();
             autofit();
+            // Skip drawing this frame if the text size changed, since the TextView needs to be
+            // laid out again first.
+            return mTextView.getTextSize() == oldTextSize;
         }
     }
 
@@ -551,4 +2030,30 @@ public class AutofitHelper {
          */
         public void onTextSizeChange(float textSize, float oldTextSize);
     }
+
+    /**
+     * When an object of a type is attached to an {@code AutofitHelper}, its methods will be called
+     * after every fit of the text, including fits that didn't change the {@code textSize}.
+     */
+    public interface OnAutofitListener {
+        /**
+         * This method is called on the main thread to notify you that {@code helper} fitted its
+         * text, with what it cost and resulted in. {@code metrics} is only valid during this call.
+         */
+        public void onAutofit(AutofitHelper helper, AutofitMetrics metrics);
+    }
+
+    /**
+     * When an object of a type is set with
+     * {@link #setFitBudget(long, OnFitBudgetExceededListener)}, its methods will be called after
+     * every fit of any helper that took longer than the budget.
+     */
+    public interface OnFitBudgetExceededListener {
+        /**
+         * This method is called on the main thread to notify you that {@code helper} took
+         * {@link AutofitMetrics#getElapsedNanos()} to fit its text, more than the budget.
+         * {@code metrics} is only valid during this call.
+         */
+        public void onFitBudgetExceeded(AutofitHelper helper, AutofitMetrics metrics);
+    }
 }
@@ -2,29 +2,63 @@ package me.grantland.widget;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.text.Layout;
 import android.util.AttributeSet;
 import android.util.TypedValue;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
 import android.widget.FrameLayout;
 import android.widget.TextView;
 
-import java.util.WeakHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * A {@link ViewGroup} that re-sizes the text of it's children to be no larger than the width of the
  * view.
  *
+ * <p>Every {@link TextView} below the layout is re-sized, at any depth, other than those within a
+ * nested {@code AutofitLayout} or that are {@link AutofitTextView}s themselves. Helpers are only
+ * created for TextViews as they are first laid out while not gone, so children that are never
+ * shown cost nothing, and the layout passes on the layout changes of all of them from its own
+ * layout pass instead of listening to each of them.</p>
+ *
+ * <p>With {@code uniformTextSize} enabled, all the children share a single text size, the largest
+ * that fits every one of them.</p>
+ *
  * @attr ref R.styleable.AutofitTextView_sizeToFit
  * @attr ref R.styleable.AutofitTextView_minTextSize
  * @attr ref R.styleable.AutofitTextView_precision
+ * @attr ref R.styleable.AutofitTextView_stepGranularity
+ * @attr ref R.styleable.AutofitTextView_presetSizes
+ * @attr ref R.styleable.AutofitTextView_strategy
+ * @attr ref R.styleable.AutofitTextView_fitHeight
+ * @attr ref R.styleable.AutofitTextView_probeBreakStrategy
+ * @attr ref R.styleable.AutofitTextView_probeHyphenationFrequency
+ * @attr ref R.styleable.AutofitTextView_uniformTextSize
  */
 public class AutofitLayout extends FrameLayout {
 
     private boolean mEnabled;
     private float mMinTextSize;
     private float mPrecision;
-    private WeakHashMap<View, AutofitHelper> mHelpers = new WeakHashMap<View, AutofitHelper>();
+    private float mStepGranularity;
+    private float[] mPresetSizes;
+    private int mStrategy;
+    private boolean mFitHeight;
+    private int mProbeBreakStrategy;
+    private int mProbeHyphenationFrequency;
+    private boolean mUniformTextSize;
+    // Helpers in the order they were created, and the same helpers by TextView
+    private final ArrayList<AutofitHelper> mHelpers = new ArrayList<AutofitHelper>();
+    private final HashMap<TextView, AutofitHelper> mHelpersByView =
+            new HashMap<TextView, AutofitHelper>();
+
+    private boolean mGroupAutofitPending;
+    private AutofitPreDrawRequest mGroupPreDrawRequest;
+    private final ArrayList<AutofitHelper> mGroupMembers = new ArrayList<AutofitHelper>();
 
     public AutofitLayout(Context context) {
         super(context);
@@ -45,6 +79,13 @@ public class AutofitLayout extends FrameLayout {
         boolean sizeToFit = true;
         int minTextSize = -1;
         float precision = -1;
+        float stepGranularity = 0;
+        float[] presetSizes = null;
+        int strategy = AutofitHelper.STRATEGY_SEARCH;
+        boolean fitHeight = false;
+        int probeBreakStrategy = Layout.BREAK_STRATEGY_SIMPLE;
+        int probeHyphenationFrequency = Layout.HYPHENATION_FREQUENCY_NONE;
+        boolean uniformTextSize = false;
 
         if (attrs != null) {
             TypedArray ta = context.obtainStyledAttributes(
@@ -56,40 +97,253 @@ public class AutofitLayout extends FrameLayout {
             minTextSize = ta.getDimensionPixelSize(R.styleable.AutofitTextView_minTextSize,
                     minTextSize);
             precision = ta.getFloat(R.styleable.AutofitTextView_precision, precision);
+            stepGranularity = ta.getDimension(R.styleable.AutofitTextView_stepGranularity,
+                    stepGranularity);
+            presetSizes = AutofitHelper.getPresetSizes(context, ta);
+            strategy = ta.getInt(R.styleable.AutofitTextView_strategy, strategy);
+            fitHeight = ta.getBoolean(R.styleable.AutofitTextView_fitHeight, fitHeight);
+            probeBreakStrategy = ta.getInt(R.styleable.AutofitTextView_probeBreakStrategy,
+                    probeBreakStrategy);
+            probeHyphenationFrequency = ta.getInt(
+                    R.styleable.AutofitTextView_probeHyphenationFrequency,
+                    probeHyphenationFrequency);
+            uniformTextSize = ta.getBoolean(R.styleable.AutofitTextView_uniformTextSize,
+                    uniformTextSize);
             ta.recycle();
         }
 
         mEnabled = sizeToFit;
         mMinTextSize = minTextSize;
         mPrecision = precision;
+        mStepGranularity = stepGranularity;
+        mPresetSizes = presetSizes;
+        mStrategy = strategy;
+        mFitHeight = fitHeight;
+        mProbeBreakStrategy = probeBreakStrategy;
+        mProbeHyphenationFrequency = probeHyphenationFrequency;
+        mUniformTextSize = uniformTextSize;
     }
 
     @Override
-    public void addView(View child, int index, ViewGroup.LayoutParams params) {
-        super.addView(child, index, params);
-        TextView textView = (TextView) child;
-        AutofitHelper helper = AutofitHelper.create(textView)
-                .setEnabled(mEnabled);
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+
+        // Any descendant requesting a layout lays this layout out again, so this sees every
+        // change to the hierarchy below it and every descendant laid out to new bounds.
+        ArrayList<AutofitHelper> helpers = mHelpers;
+        for (int i = helpers.size() - 1; i >= 0; i--) {
+            AutofitHelper helper = helpers.get(i);
+            if (!isDescendant(helper.getTextView())) {
+                releaseHelper(i);
+            } else if (helper.isEnabled()) {
+                helper.onLayoutChange();
+            }
+        }
+        attachHelpers(this);
+    }
+
+    /**
+     * Creates a helper for every TextView below {@code parent} that isn't gone and doesn't have
+     * one yet. Other {@link AutofitLayout}s and {@link AutofitTextView}s fit their own text, so
+     * they are skipped.
+     */
+    private void attachHelpers(ViewGroup parent) {
+        for (int i = 0, count = parent.getChildCount(); i < count; i++) {
+            View child = parent.getChildAt(i);
+            if (child.getVisibility() == GONE
+                    || child instanceof AutofitLayout || child instanceof AutofitTextView) {
+                continue;
+            }
+            if (child instanceof TextView) {
+                TextView textView = (TextView) child;
+                if (!mHelpersByView.containsKey(textView)) {
+                    createHelper(textView);
+                }
+            } else if (child instanceof ViewGroup) {
+                attachHelpers((ViewGroup) child);
+            }
+        }
+    }
+
+    private boolean isDescendant(View view) {
+        ViewParent parent = view.getParent();
+        while (parent instanceof View) {
+            if (parent == this) {
+                return true;
+            }
+            parent = parent.getParent();
+        }
+        return false;
+    }
+
+    private AutofitHelper createHelper(TextView textView) {
+        AutofitHelper helper = new AutofitHelper(textView, this);
+        if (mUniformTextSize) {
+            helper.setGroup(this);
+        }
+        helper.setStepGranularity(TypedValue.COMPLEX_UNIT_PX, mStepGranularity)
+                .setPresetSizes(TypedValue.COMPLEX_UNIT_PX, mPresetSizes)
+                .setStrategy(mStrategy)
+                .setFitHeight(mFitHeight)
+                .setProbeBreakStrategy(mProbeBreakStrategy)
+                .setProbeHyphenationFrequency(mProbeHyphenationFrequency);
         if (mPrecision > 0) {
             helper.setPrecision(mPrecision);
         }
         if (mMinTextSize > 0) {
             helper.setMinTextSize(TypedValue.COMPLEX_UNIT_PX, mMinTextSize);
         }
-        mHelpers.put(textView, helper);
+        mHelpers.add(helper);
+        mHelpersByView.put(textView, helper);
+        // Enabled last. A disabled helper doesn't re-size its text when its properties are set,
+        // so it is fitted once, with all of them, when enabled.
+        helper.setEnabled(mEnabled);
+        return helper;
     }
 
     /**
-     * Returns the {@link AutofitHelper} for this child View.
+     * Stops re-sizing the text of a TextView that was removed from below this layout, and
+     * restores its original text size.
+     */
+    private void releaseHelper(int index) {
+        AutofitHelper helper = mHelpers.remove(index);
+        mHelpersByView.remove(helper.getTextView());
+        helper.setGroup(null);
+        helper.setEnabled(false);
+    }
+
+    /**
+     * Returns the {@link AutofitHelper} for this descendant View, creating it if it wasn't yet,
+     * or {@code null} if the View isn't a TextView whose text this layout re-sizes.
      */
     public AutofitHelper getAutofitHelper(TextView textView) {
-        return mHelpers.get(textView);
+        AutofitHelper helper = mHelpersByView.get(textView);
+        if (helper == null && isDescendant(textView) && !(textView instanceof AutofitTextView)
+                && !isInNestedAutofitLayout(textView)) {
+            helper = createHelper(textView);
+        }
+        return helper;
     }
 
     /**
-     * Returns the {@link AutofitHelper} for this child View.
+     * Returns the {@link AutofitHelper} for this child View, creating it if it wasn't yet, or
+     * {@code null} if the child isn't a TextView whose text this layout re-sizes.
      */
     public AutofitHelper getAutofitHelper(int index) {
-        return mHelpers.get(getChildAt(index));
+        View child = getChildAt(index);
+        return child instanceof TextView ? getAutofitHelper((TextView) child) : null;
+    }
+
+    private boolean isInNestedAutofitLayout(View view) {
+        ViewParent parent = view.getParent();
+        while (parent != this) {
+            if (parent instanceof AutofitLayout) {
+                return true;
+            }
+            parent = parent.getParent();
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether or not the children share a single text size.
+     */
+    public boolean isUniformTextSize() {
+        return mUniformTextSize;
+    }
+
+    /**
+     * Set whether the children share a single text size, the largest that fits every one of
+     * them, or are each re-sized on their own, which is the default.
+     *
+     * @attr ref me.grantland.R.styleable#AutofitTextView_uniformTextSize
+     */
+    public void setUniformTextSize(boolean uniformTextSize) {
+        if (mUniformTextSize != uniformTextSize) {
+            mUniformTextSize = uniformTextSize;
+
+            for (int i = 0, count = mHelpers.size(); i < count; i++) {
+                AutofitHelper helper = mHelpers.get(i);
+                helper.setGroup(uniformTextSize ? this : null);
+                if (!uniformTextSize && helper.isEnabled()) {
+                    helper.requestAutofit();
+                }
+            }
+            if (uniformTextSize) {
+                requestGroupAutofit();
+            } else {
+                cancelGroupAutofit();
+            }
+        }
+    }
+
+    /**
+     * Re-sizes the text of all the children before the next frame is drawn, so that any number of
+     * changes to them before then only cost a single fit.
+     */
+    void requestGroupAutofit() {
+        if (mGroupAutofitPending) {
+            return;
+        }
+        if (mGroupPreDrawRequest == null) {
+            mGroupPreDrawRequest = new AutofitPreDrawRequest(this, new GroupOnPreDrawListener());
+        }
+        mGroupAutofitPending = true;
+        mGroupPreDrawRequest.request();
+    }
+
+    private void cancelGroupAutofit() {
+        if (mGroupAutofitPending) {
+            mGroupAutofitPending = false;
+            mGroupPreDrawRequest.cancel();
+        }
+    }
+
+    /**
+     * Re-sizes the text of all the children to the largest size that fits every one of them, and
+     * returns whether any of their text sizes changed.
+     *
+     * Each child is fitted no larger than the smallest size found so far, so once the most
+     * constrained child has been searched, every other child only costs the single measurement
+     * that confirms it fits at that size. The shared size is then applied to all the children in
+     * one pass, so their layout requests are all served by the same layout pass.
+     */
+    private boolean autofitGroup() {
+        ArrayList<AutofitHelper> members = mGroupMembers;
+        float size = Float.MAX_VALUE;
+        for (int i = 0, count = mHelpers.size(); i < count; i++) {
+            AutofitHelper helper = mHelpers.get(i);
+            if (!helper.isEnabled()) {
+                continue;
+            }
+            float childSize = helper.computeAutofitTextSize(size, null);
+            if (childSize >= 0) {
+                size = Math.min(size, childSize);
+                members.add(helper);
+            }
+        }
+
+        boolean changed = false;
+        for (int i = 0, count = members.size(); i < count; i++) {
+            AutofitHelper helper = members.get(i);
+            boolean textSizeChanged = helper.applyTextSize(size);
+            helper.sendAutofit(textSizeChanged);
+            changed |= textSizeChanged;
+        }
+        members.clear();
+        return changed;
+    }
+
+    private class GroupOnPreDrawListener implements ViewTreeObserver.OnPreDrawListener {
+        @Override
+        public boolean onPreDraw() {
+            if (!mGroupAutofitPending) {
+                return true;
+            }
+            cancelGroupAutofit();
+            // Skip drawing this frame if any text size changed, since the children need to be laid
+            // out again first.
+            return !autofitGroup();
+        }
     }
 }
@@ -0,0 +1,580 @@
+package me.grantland.widget;
+
+import android.graphics.Paint;
+import android.os.Build;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+/**
+ * Measures how a text breaks into lines at the current size of a {@link TextPaint}.
+ *
+ * <p>The characters of the text are copied into a reusable buffer once per fit, and each
+ * measurement fetches the glyph advances into another reusable buffer and breaks lines greedily.
+ * Lines are broken after whitespace, after punctuation, slashes and hyphens that aren't next to
+ * digits, and between ideographs, like {@link StaticLayout} did before android-23. This only
+ * approximates how a {@link StaticLayout} breaks the text, which on android-23+ follows the
+ * Unicode line breaking rules, so a size found this way for text with more than one line must be
+ * verified with {@link #setLayoutForced(boolean)}. Once the buffers have grown to fit the text,
+ * measuring doesn't allocate.</p>
+ *
+ * <p>Text with spans that affect its metrics can't be measured from the paint alone, so it falls
+ * back to building a {@link StaticLayout} per measurement. So does text with more than one line
+ * if a break strategy or hyphenation other than the greedy line breaking above is requested.</p>
+ *
+ * <p>If enabled, glyph advances are taken from an {@link AutofitAdvanceTable} instead of the
+ * paint for text that it covers.</p>
+ */
+final class AutofitMeasurer {
+
+    private CharSequence mText;
+    private char[] mChars;
+    private float[] mWidths;
+    private int mLength;
+    private int mParagraphCount;
+    private boolean mUseLayout;
+
+    private boolean mAdvanceTableEnabled;
+    // Whether the text is covered by the advance tables
+    private boolean mAdvanceTableCovers;
+    // Table for the paint of the current text, or null if not looked up yet or not available
+    private float[] mAdvanceTable;
+    private boolean mAdvanceTableResolved;
+    private final AutofitAdvanceTable.Key mAdvanceTableKey = new AutofitAdvanceTable.Key();
+
+    private float mLineSpacingMultiplier = 1.0f;
+    private float mLineSpacingExtra = 0.0f;
+    private boolean mIncludeFontPadding = true;
+    private int mBreakStrategy = Layout.BREAK_STRATEGY_SIMPLE;
+    private int mHyphenationFrequency = Layout.HYPHENATION_FREQUENCY_NONE;
+    private boolean mLayoutForced;
+    private final Paint.FontMetricsInt mFontMetrics = new Paint.FontMetricsInt();
+
+    private int mMeasureCount;
+    private int mLayoutCount;
+    private int mPaintMeasureCount;
+    private int mLineCount;
+    private float mMaxLineWidth;
+    private float mLastLineWidth;
+    private float mTotalWidth;
+    private int mHeight;
+
+    // Whether the paragraph widths below are of the last measurement
+    private boolean mParagraphsMeasured;
+    private float mLongestParagraphWidth;
+    private float mInkWidth;
+
+    /**
+     * Sets the text to measure. The text must not change until the next call.
+     */
+    void setText(CharSequence text) {
+        int length = text.length();
+
+        mText = text;
+        mLength = length;
+        mAdvanceTable = null;
+        mAdvanceTableResolved = false;
+        mParagraphsMeasured = false;
+        mUseLayout = !AutofitCache.isCacheable(text);
+        if (mUseLayout) {
+            mAdvanceTableCovers = false;
+            mParagraphCount = 1;
+            for (int i = 0; i < length; i++) {
+                if (text.charAt(i) == '\n') {
+                    mParagraphCount++;
+                }
+            }
+            return;
+        }
+
+        if (mChars == null || mChars.length < length) {
+            mChars = new char[length];
+            mWidths = new float[length];
+        }
+        TextUtils.getChars(text, 0, length, mChars, 0);
+        mAdvanceTableCovers = AutofitAdvanceTable.covers(mChars, length);
+        mParagraphCount = 1;
+        for (int i = 0; i < length; i++) {
+            if (mChars[i] == '\n') {
+                mParagraphCount++;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of hard lines of the text, separated by newline characters, which is the
+     * least number of lines it takes up at any size.
+     */
+    int getParagraphCount() {
+        return mParagraphCount;
+    }
+
+    /**
+     * Sets whether glyph advances are taken from an {@link AutofitAdvanceTable} where possible.
+     * Measurements taken from a table are approximate.
+     */
+    void setAdvanceTableEnabled(boolean enabled) {
+        mAdvanceTableEnabled = enabled;
+    }
+
+    /**
+     * Returns whether the next measurement takes its glyph advances from an
+     * {@link AutofitAdvanceTable}, looking the table up for {@code paint} if needed. The paint's
+     * typeface and style must not change until the next {@link #setText(CharSequence)}.
+     */
+    boolean isUsingAdvanceTable(TextPaint paint) {
+        if (!mAdvanceTableEnabled || !mAdvanceTableCovers) {
+            return false;
+        }
+        if (!mAdvanceTableResolved) {
+            mAdvanceTable = AutofitAdvanceTable.get(paint, mAdvanceTableKey);
+            mAdvanceTableResolved = true;
+        }
+        return mAdvanceTable != null;
+    }
+
+    /**
+     * Sets the line spacing and font padding used to compute the height of the text, the same way
+     * {@link StaticLayout} does.
+     */
+    void setLineSpacing(float multiplier, float extra, boolean includeFontPadding) {
+        mLineSpacingMultiplier = multiplier;
+        mLineSpacingExtra = extra;
+        mIncludeFontPadding = includeFontPadding;
+    }
+
+    /**
+     * Sets the break strategy and hyphenation frequency used to break text into lines. Anything
+     * other than {@link Layout#BREAK_STRATEGY_SIMPLE} without hyphenation is measured with a
+     * {@link StaticLayout}, on android-23+ where they are supported.
+     */
+    void setBreakStrategy(int breakStrategy, int hyphenationFrequency) {
+        mBreakStrategy = breakStrategy;
+        mHyphenationFrequency = hyphenationFrequency;
+    }
+
+    /**
+     * Sets whether text with more than one line is always broken into lines by a
+     * {@link StaticLayout}, so that it is broken exactly as its View breaks it.
+     */
+    void setLayoutForced(boolean layoutForced) {
+        mLayoutForced = layoutForced;
+    }
+
+    /**
+     * Returns whether text with more than one line is broken into lines by a {@link StaticLayout}.
+     */
+    boolean isBreakingWithLayout() {
+        return mUseLayout || mLayoutForced
+                || (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                        && (mBreakStrategy != Layout.BREAK_STRATEGY_SIMPLE
+                                || mHyphenationFrequency != Layout.HYPHENATION_FREQUENCY_NONE));
+    }
+
+    /**
+     * Releases the reference to the text set with {@link #setText(CharSequence)}, keeping the
+     * buffers for the next fit.
+     */
+    void clearText() {
+        mText = null;
+    }
+
+    /**
+     * Returns the number of measurements since the last {@link #resetMeasureCount()}.
+     */
+    int getMeasureCount() {
+        return mMeasureCount;
+    }
+
+    /**
+     * Returns the number of {@link StaticLayout}s built since the last
+     * {@link #resetMeasureCount()}.
+     */
+    int getLayoutCount() {
+        return mLayoutCount;
+    }
+
+    /**
+     * Returns the number of times the text was measured with the paint since the last
+     * {@link #resetMeasureCount()}.
+     */
+    int getPaintMeasureCount() {
+        return mPaintMeasureCount;
+    }
+
+    void resetMeasureCount() {
+        mMeasureCount = 0;
+        mLayoutCount = 0;
+        mPaintMeasureCount = 0;
+    }
+
+    /**
+     * Returns the number of lines of the last measurement.
+     */
+    int getLineCount() {
+        return mLineCount;
+    }
+
+    /**
+     * Returns the width of the widest line of the last measurement, excluding trailing whitespace.
+     */
+    float getMaxLineWidth() {
+        return mMaxLineWidth;
+    }
+
+    /**
+     * Returns the height of the text of the last measurement, including line spacing and font
+     * padding.
+     */
+    int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Returns the width of the whole text laid out on a single line, as of the last measurement.
+     */
+    float getTotalWidth() {
+        return mTotalWidth;
+    }
+
+    /**
+     * Measures the width of each hard line of the text at the paint's current size, which must be
+     * that of the last measurement, if any. Returns {@code false} if the text has spans that
+     * affect its metrics, in which case the widths aren't known. This reuses the advances of the
+     * last measurement if it broke the text into lines itself, so it usually costs nothing.
+     */
+    boolean measureParagraphs(TextPaint paint) {
+        if (mUseLayout) {
+            return false;
+        }
+        if (!mParagraphsMeasured) {
+            if (isUsingAdvanceTable(paint)) {
+                AutofitAdvanceTable.getTextWidths(mAdvanceTable, paint, mChars, mLength, mWidths);
+            } else if (mLength > 0) {
+                paint.getTextWidths(mChars, 0, mLength, mWidths);
+                mPaintMeasureCount++;
+            }
+            measureParagraphs();
+        }
+        return true;
+    }
+
+    /**
+     * Computes the total and paragraph widths from the advances in {@code mWidths}.
+     */
+    private void measureParagraphs() {
+        final char[] chars = mChars;
+        final float[] widths = mWidths;
+        final int length = mLength;
+
+        float totalWidth = 0;
+        float longestWidth = 0;
+        float paragraphWidth = 0;
+        float inkWidth = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c == '\n') {
+                longestWidth = Math.max(longestWidth, paragraphWidth);
+                paragraphWidth = 0;
+                continue;
+            }
+            totalWidth += widths[i];
+            paragraphWidth += widths[i];
+            if (c != ' ' && c != '\t') {
+                inkWidth += widths[i];
+            }
+        }
+        mTotalWidth = totalWidth;
+        mLongestParagraphWidth = Math.max(longestWidth, paragraphWidth);
+        mInkWidth = inkWidth;
+        mParagraphsMeasured = true;
+    }
+
+    /**
+     * Returns the width of the widest hard line of the text, including whitespace, as of the last
+     * {@link #measureParagraphs(TextPaint)}. At any size at which it is no wider than the target
+     * width, every hard line fits on a line of its own.
+     */
+    float getLongestParagraphWidth() {
+        return mLongestParagraphWidth;
+    }
+
+    /**
+     * Returns the width of all the glyphs of the text other than whitespace, as of the last
+     * {@link #measureParagraphs(TextPaint)}. However the text breaks into lines, each of them
+     * holds part of it, so the text can't fit on fewer lines than this is wide in target widths.
+     */
+    float getInkWidth() {
+        return mInkWidth;
+    }
+
+    /**
+     * Returns how much of the available space the text of the last measurement fills, where 1
+     * means the text just fits. Lines are counted relative to {@code maxLines}, with the last line
+     * counted by how much of {@code targetWidth} it takes up; if {@code maxLines} is 1 this is the
+     * width of the text relative to {@code targetWidth}. If {@code targetHeight} is positive, the
+     * height of the text relative to it is taken into account as well. Since both the height and
+     * the number of lines grow with text size, height grows with its square, so its square root
+     * is used to keep the fill growing almost linearly with text size.
+     */
+    float getFill(float targetWidth, int maxLines, int targetHeight) {
+        float fill;
+        if (maxLines == 1) {
+            fill = mMaxLineWidth / targetWidth;
+        } else {
+            fill = (mLineCount - 1 + mLastLineWidth / targetWidth) / maxLines;
+        }
+        if (targetHeight > 0) {
+            fill = Math.max(fill, (float) Math.sqrt((float) mHeight / targetHeight));
+        }
+        return fill;
+    }
+
+    /**
+     * Measures the text at the paint's current size, breaking it into lines no wider than
+     * {@code targetWidth}, and returns the number of lines. If {@code maxLines} is 1 the text is
+     * measured on a single line instead.
+     */
+    int measure(TextPaint paint, float targetWidth, int maxLines) {
+        mMeasureCount++;
+        mParagraphsMeasured = false;
+        if (maxLines == 1) {
+            mLineCount = 1;
+            if (mUseLayout) {
+                mMaxLineWidth = Layout.getDesiredWidth(mText, paint);
+                mPaintMeasureCount++;
+            } else if (isUsingAdvanceTable(paint)) {
+                mMaxLineWidth = measureWidth(paint);
+            } else {
+                mMaxLineWidth = paint.measureText(mChars, 0, mLength);
+                mPaintMeasureCount++;
+            }
+            mLastLineWidth = mMaxLineWidth;
+            mTotalWidth = mMaxLineWidth;
+            mHeight = computeHeight(paint, 1);
+        } else if (isBreakingWithLayout()) {
+            measureLayout(paint, targetWidth);
+        } else {
+            measureLines(paint, targetWidth);
+            mHeight = computeHeight(paint, mLineCount);
+        }
+        return mLineCount;
+    }
+
+    private float measureWidth(TextPaint paint) {
+        final float[] widths = mWidths;
+        final int length = mLength;
+
+        AutofitAdvanceTable.getTextWidths(mAdvanceTable, paint, mChars, length, widths);
+        float width = 0;
+        for (int i = 0; i < length; i++) {
+            width += widths[i];
+        }
+        return width;
+    }
+
+    private void measureLayout(TextPaint paint, float targetWidth) {
+        StaticLayout layout;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            // StaticLayout.Builder, setBreakStrategy() and setHyphenationFrequency() are only
+            // available on android-23+
+            StaticLayout.Builder builder = StaticLayout.Builder.obtain(mText, 0, mText.length(),
+                    paint, (int) targetWidth);
+            layout = builder.setLineSpacing(mLineSpacingExtra, mLineSpacingMultiplier)
+                    .setIncludePad(mIncludeFontPadding)
+                    .setBreakStrategy(mBreakStrategy)
+                    .setHyphenationFrequency(mHyphenationFrequency)
+                    .build();
+        } else {
+            layout = new StaticLayout(mText, paint, (int) targetWidth,
+                    Layout.Alignment.ALIGN_NORMAL, mLineSpacingMultiplier, mLineSpacingExtra,
+                    mIncludeFontPadding);
+        }
+        mLayoutCount++;
+        int lineCount = layout.getLineCount();
+        float maxLineWidth = 0;
+        float totalWidth = 0;
+        for (int i = 0; i < lineCount; i++) {
+            float lineWidth = layout.getLineWidth(i);
+            maxLineWidth = Math.max(maxLineWidth, lineWidth);
+            totalWidth += lineWidth;
+        }
+        mLineCount = lineCount;
+        mMaxLineWidth = maxLineWidth;
+        mLastLineWidth = layout.getLineWidth(lineCount - 1);
+        mTotalWidth = totalWidth;
+        mHeight = layout.getHeight();
+    }
+
+    /**
+     * Returns the height of {@code lineCount} lines at the paint's current size. Like
+     * {@link StaticLayout}, line spacing is added between lines and font padding above the first
+     * line and below the last.
+     */
+    private int computeHeight(TextPaint paint, int lineCount) {
+        Paint.FontMetricsInt fm = mFontMetrics;
+        paint.getFontMetricsInt(fm);
+
+        int lineHeight = fm.descent - fm.ascent;
+        int extra = Math.round(lineHeight * (mLineSpacingMultiplier - 1) + mLineSpacingExtra);
+        int height = lineCount * lineHeight + (lineCount - 1) * extra;
+        if (mIncludeFontPadding) {
+            height += (fm.ascent - fm.top) + (fm.bottom - fm.descent);
+        }
+        return height;
+    }
+
+    private void measureLines(TextPaint paint, float targetWidth) {
+        final char[] chars = mChars;
+        final float[] widths = mWidths;
+        final int length = mLength;
+
+        if (isUsingAdvanceTable(paint)) {
+            AutofitAdvanceTable.getTextWidths(mAdvanceTable, paint, chars, length, widths);
+        } else if (length > 0) {
+            paint.getTextWidths(chars, 0, length, widths);
+            mPaintMeasureCount++;
+        }
+
+        measureParagraphs();
+
+        int lineCount = 0;
+        float maxLineWidth = 0;
+        float lastLineWidth = 0;
+        int paragraphStart = 0;
+        while (true) {
+            int paragraphEnd = paragraphStart;
+            while (paragraphEnd < length && chars[paragraphEnd] != '\n') {
+                paragraphEnd++;
+            }
+
+            lineCount++;
+            // Width of the current line, including trailing whitespace
+            float lineWidth = 0;
+            // Width of the current line, excluding trailing whitespace
+            float visibleWidth = 0;
+            // Where the next line starts if the current line is broken at the last opportunity
+            int breakIndex = -1;
+            float breakVisibleWidth = 0;
+            float widthSinceBreak = 0;
+            int lineStart = paragraphStart;
+
+            for (int i = paragraphStart; i < paragraphEnd; i++) {
+                char c = chars[i];
+                float width = widths[i];
+
+                if (c == ' ' || c == '\t') {
+                    // Whitespace hangs off the end of the line instead of breaking it.
+                    lineWidth += width;
+                    breakIndex = i + 1;
+                    breakVisibleWidth = visibleWidth;
+                    widthSinceBreak = 0;
+                    continue;
+                }
+
+                while (lineWidth + width > targetWidth && i > lineStart) {
+                    if (breakIndex > lineStart) {
+                        maxLineWidth = Math.max(maxLineWidth, breakVisibleWidth);
+                        lineStart = breakIndex;
+                        lineWidth = widthSinceBreak;
+                    } else {
+                        // A single word is wider than the line, so break inside of it.
+                        maxLineWidth = Math.max(maxLineWidth, visibleWidth);
+                        lineStart = i;
+                        lineWidth = 0;
+                    }
+                    visibleWidth = lineWidth;
+                    breakIndex = -1;
+                    widthSinceBreak = lineWidth;
+
+                    lineCount++;
+                }
+
+                lineWidth += width;
+                visibleWidth = lineWidth;
+                widthSinceBreak += width;
+
+                if (isBreakAfter(chars, i, paragraphStart, paragraphEnd)) {
+                    breakIndex = i + 1;
+                    breakVisibleWidth = visibleWidth;
+                    widthSinceBreak = 0;
+                }
+            }
+            maxLineWidth = Math.max(maxLineWidth, visibleWidth);
+            lastLineWidth = visibleWidth;
+
+            if (paragraphEnd >= length) {
+                break;
+            }
+            paragraphStart = paragraphEnd + 1;
+        }
+
+        mLineCount = lineCount;
+        mMaxLineWidth = maxLineWidth;
+        mLastLineWidth = lastLineWidth;
+    }
+
+    /**
+     * Returns whether a line can be broken after the character at {@code i}, other than
+     * whitespace, in the paragraph from {@code start} to {@code end}. These are the rules of
+     * {@link StaticLayout} before android-23.
+     */
+    private static boolean isBreakAfter(char[] chars, int i, int start, int end) {
+        char c = chars[i];
+        boolean digitBefore = i - 1 >= start && Character.isDigit(chars[i - 1]);
+        boolean digitAfter = i + 1 < end && Character.isDigit(chars[i + 1]);
+        switch (c) {
+            case '.':
+            case ',':
+            case ':':
+            case ';':
+                return !digitBefore && !digitAfter;
+            case '/':
+            case '-':
+                return !digitAfter;
+            default:
+                return i + 1 < end && isIdeographic(c, true) && isIdeographic(chars[i + 1], false);
+        }
+    }
+
+    /**
+     * Returns whether {@code c} is an ideograph, or kana, that a line can be broken before or
+     * after. Small kana and prolonged sound marks can't start a line, so they only count if
+     * {@code includeNonStarters}.
+     */
+    private static boolean isIdeographic(char c, boolean includeNonStarters) {
+        if (c >= '\u2E80' && c <= '\u2FFF') {
+            return true; // CJK radicals, Kangxi radicals and description characters
+        }
+        if (c == '\u3000') {
+            return true; // Ideographic space
+        }
+        if (c >= '\u3040' && c <= '\u30FF') {
+            // Hiragana and katakana
+            return includeNonStarters || !isKanaNonStarter(c);
+        }
+        return (c >= '\u3400' && c <= '\u4DB5') // CJK unified ideographs extension A
+                || (c >= '\u4E00' && c <= '\u9FBB') // CJK unified ideographs
+                || (c >= '\uF900' && c <= '\uFAD9') // CJK compatibility ideographs
+                || (c >= '\uA000' && c <= '\uA4CF') // Yi syllables and radicals
+                || (c >= '\uFE62' && c <= '\uFE66') // Small math operators
+                || (c >= '\uFF10' && c <= '\uFF19'); // Fullwidth digits
+    }
+
+    private static boolean isKanaNonStarter(char c) {
+        switch (c) {
+            case '\u3041': case '\u3043': case '\u3045': case '\u3047': case '\u3049':
+            case '\u3063': case '\u3083': case '\u3085': case '\u3087': case '\u308E':
+            case '\u3095': case '\u3096': case '\u309B': case '\u309C': case '\u309D':
+            case '\u309E':
+            case '\u30A0': case '\u30A1': case '\u30A3': case '\u30A5': case '\u30A7':
+            case '\u30A9': case '\u30C3': case '\u30E3': case '\u30E5': case '\u30E7':
+            case '\u30EE': case '\u30F5': case '\u30F6': case '\u30FB': case '\u30FC':
+            case '\u30FD': case '\u30FE':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package me.grantland.widget;
+
+/**
+ * What a single fit of an {@link AutofitHelper} cost and what it resulted in, as reported to an
+ * {@link AutofitHelper.OnAutofitListener} or an {@link AutofitHelper.OnFitBudgetExceededListener}.
+ *
+ * <p>Instances are reused by their helper, so they are only valid for the duration of the
+ * listener call. Copy any values that need to outlive it.</p>
+ */
+public class AutofitMetrics {
+
+    /**
+     * The fit was triggered by a change to the text.
+     */
+    public static final int TRIGGER_TEXT = 0;
+    /**
+     * The fit was triggered by a change to the bounds of the View.
+     */
+    public static final int TRIGGER_LAYOUT = 1;
+    /**
+     * The fit was triggered by a change to one of the helper's properties, such as its maximum
+     * text size, or by enabling it.
+     */
+    public static final int TRIGGER_PROPERTY = 2;
+    /**
+     * The fit was triggered by a change to a sibling in the same uniformly sized
+     * {@link AutofitLayout}.
+     */
+    public static final int TRIGGER_GROUP = 3;
+
+    int mTrigger;
+    int mProbeCount;
+    int mLayoutCount;
+    int mPaintMeasureCount;
+    long mElapsedNanos;
+    boolean mCacheHit;
+    boolean mAsync;
+    float mTextSize;
+    boolean mTextSizeChanged;
+    int mTextLength;
+    int mTargetWidth;
+    int mMaxLines;
+
+    AutofitMetrics() {
+    }
+
+    /**
+     * Returns what triggered the fit, one of {@link #TRIGGER_TEXT}, {@link #TRIGGER_LAYOUT},
+     * {@link #TRIGGER_PROPERTY} or {@link #TRIGGER_GROUP}. If several changes were coalesced into
+     * the fit, this is the first of them.
+     */
+    public int getTrigger() {
+        return mTrigger;
+    }
+
+    /**
+     * Returns the number of times the text was measured, or {@code 0} if the size was found in the
+     * {@link AutofitCache}.
+     */
+    public int getProbeCount() {
+        return mProbeCount;
+    }
+
+    /**
+     * Returns the number of {@link android.text.StaticLayout}s built to measure the text, which
+     * is only needed for text with spans that affect its metrics, or for text broken into lines
+     * with a break strategy or hyphenation other than the simplest.
+     */
+    public int getLayoutCount() {
+        return mLayoutCount;
+    }
+
+    /**
+     * Returns the number of times the text was measured with the paint, through
+     * {@link android.graphics.Paint#measureText(char[], int, int)} and the like.
+     */
+    public int getPaintMeasureCount() {
+        return mPaintMeasureCount;
+    }
+
+    /**
+     * Returns the wall time it took to compute the fit in nanoseconds, excluding applying it to
+     * the View. For a fit computed on an {@link java.util.concurrent.Executor}, this is the time
+     * it took in the background.
+     */
+    public long getElapsedNanos() {
+        return mElapsedNanos;
+    }
+
+    /**
+     * Returns whether the size was found in the {@link AutofitCache}.
+     */
+    public boolean isCacheHit() {
+        return mCacheHit;
+    }
+
+    /**
+     * Returns whether the fit was computed on an {@link java.util.concurrent.Executor}.
+     */
+    public boolean isAsync() {
+        return mAsync;
+    }
+
+    /**
+     * Returns the text size the fit resulted in, in pixels.
+     */
+    public float getTextSize() {
+        return mTextSize;
+    }
+
+    /**
+     * Returns whether the fit changed the text size of the View.
+     */
+    public boolean isTextSizeChanged() {
+        return mTextSizeChanged;
+    }
+
+    /**
+     * Returns the length of the text that was fitted, after the TextView's transformation method
+     * if any.
+     */
+    public int getTextLength() {
+        return mTextLength;
+    }
+
+    /**
+     * Returns the width the text was fitted to in pixels, excluding padding.
+     */
+    public int getTargetWidth() {
+        return mTargetWidth;
+    }
+
+    /**
+     * Returns the maximum number of lines the text was fitted to, or {@link Integer#MAX_VALUE}
+     * if only its height was limited.
+     */
+    public int getMaxLines() {
+        return mMaxLines;
+    }
+
+    @Override
+    public String toString() {
+        return "AutofitMetrics[trigger=" + mTrigger + ",probes=" + mProbeCount
+                + ",layouts=" + mLayoutCount + ",paintMeasures=" + mPaintMeasureCount
+                + ",elapsedNanos=" + mElapsedNanos + ",cacheHit=" + mCacheHit
+                + ",async=" + mAsync + ",textSize=" + mTextSize
+                + ",textSizeChanged=" + mTextSizeChanged + ",textLength=" + mTextLength
+                + ",targetWidth=" + mTargetWidth + ",maxLines=" + mMaxLines + "]";
+    }
+}
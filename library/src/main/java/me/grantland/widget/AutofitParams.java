@@ -0,0 +1,134 @@
+package me.grantland.widget;
+
+import java.util.Arrays;
+
+/**
+ * The bounds and properties a text is fitted against, apart from the text and its paint.
+ */
+final class AutofitParams {
+
+    /** Width available to the text in pixels, excluding padding. */
+    int mTargetWidth;
+    /** Height available to the text in pixels, excluding padding, or 0 to ignore height. */
+    int mTargetHeight;
+    int mMaxLines;
+    float mMinTextSize;
+    float mMaxTextSize;
+    float mPrecision;
+    int mStrategy;
+    float mLineSpacingMultiplier = 1.0f;
+    float mLineSpacingExtra = 0.0f;
+    boolean mIncludeFontPadding = true;
+    boolean mAdvanceTableEnabled;
+    /** Break strategy and hyphenation frequency the text is laid out with by its View. */
+    int mBreakStrategy;
+    int mHyphenationFrequency;
+    /** Break strategy and hyphenation frequency the text is measured with while searching. */
+    int mProbeBreakStrategy;
+    int mProbeHyphenationFrequency;
+    /**
+     * Sorted text sizes in pixels that the text may be fitted at, or {@code null} for any size to
+     * within the precision. Never modified once set.
+     */
+    float[] mSizes;
+
+    AutofitParams set(AutofitParams params) {
+        mTargetWidth = params.mTargetWidth;
+        mTargetHeight = params.mTargetHeight;
+        mMaxLines = params.mMaxLines;
+        mMinTextSize = params.mMinTextSize;
+        mMaxTextSize = params.mMaxTextSize;
+        mPrecision = params.mPrecision;
+        mStrategy = params.mStrategy;
+        mLineSpacingMultiplier = params.mLineSpacingMultiplier;
+        mLineSpacingExtra = params.mLineSpacingExtra;
+        mIncludeFontPadding = params.mIncludeFontPadding;
+        mAdvanceTableEnabled = params.mAdvanceTableEnabled;
+        mBreakStrategy = params.mBreakStrategy;
+        mHyphenationFrequency = params.mHyphenationFrequency;
+        mProbeBreakStrategy = params.mProbeBreakStrategy;
+        mProbeHyphenationFrequency = params.mProbeHyphenationFrequency;
+        mSizes = params.mSizes;
+        return this;
+    }
+
+    AutofitParams copy() {
+        return new AutofitParams().set(this);
+    }
+
+    /**
+     * Returns a 64-bit hash of the params, combined into {@code hash}, that is stable across
+     * processes.
+     */
+    long longHashCode(long hash) {
+        hash = AutofitDiskCache.mix(hash, mTargetWidth);
+        hash = AutofitDiskCache.mix(hash, mTargetHeight);
+        hash = AutofitDiskCache.mix(hash, mMaxLines);
+        hash = AutofitDiskCache.mix(hash, Float.floatToIntBits(mMinTextSize));
+        hash = AutofitDiskCache.mix(hash, Float.floatToIntBits(mMaxTextSize));
+        hash = AutofitDiskCache.mix(hash, Float.floatToIntBits(mPrecision));
+        hash = AutofitDiskCache.mix(hash, mStrategy);
+        hash = AutofitDiskCache.mix(hash, Float.floatToIntBits(mLineSpacingMultiplier));
+        hash = AutofitDiskCache.mix(hash, Float.floatToIntBits(mLineSpacingExtra));
+        hash = AutofitDiskCache.mix(hash, mIncludeFontPadding ? 1 : 0);
+        hash = AutofitDiskCache.mix(hash, mAdvanceTableEnabled ? 1 : 0);
+        hash = AutofitDiskCache.mix(hash, mBreakStrategy);
+        hash = AutofitDiskCache.mix(hash, mHyphenationFrequency);
+        hash = AutofitDiskCache.mix(hash, mProbeBreakStrategy);
+        hash = AutofitDiskCache.mix(hash, mProbeHyphenationFrequency);
+        if (mSizes != null) {
+            for (float size : mSizes) {
+                hash = AutofitDiskCache.mix(hash, Float.floatToIntBits(size));
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mTargetWidth;
+        result = 31 * result + mTargetHeight;
+        result = 31 * result + mMaxLines;
+        result = 31 * result + Float.floatToIntBits(mMinTextSize);
+        result = 31 * result + Float.floatToIntBits(mMaxTextSize);
+        result = 31 * result + Float.floatToIntBits(mPrecision);
+        result = 31 * result + mStrategy;
+        result = 31 * result + Float.floatToIntBits(mLineSpacingMultiplier);
+        result = 31 * result + Float.floatToIntBits(mLineSpacingExtra);
+        result = 31 * result + (mIncludeFontPadding ? 1 : 0);
+        result = 31 * result + (mAdvanceTableEnabled ? 1 : 0);
+        result = 31 * result + mBreakStrategy;
+        result = 31 * result + mHyphenationFrequency;
+        result = 31 * result + mProbeBreakStrategy;
+        result = 31 * result + mProbeHyphenationFrequency;
+        result = 31 * result + Arrays.hashCode(mSizes);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AutofitParams)) {
+            return false;
+        }
+        AutofitParams params = (AutofitParams) o;
+        return mTargetWidth == params.mTargetWidth
+                && mTargetHeight == params.mTargetHeight
+                && mMaxLines == params.mMaxLines
+                && Float.compare(mMinTextSize, params.mMinTextSize) == 0
+                && Float.compare(mMaxTextSize, params.mMaxTextSize) == 0
+                && Float.compare(mPrecision, params.mPrecision) == 0
+                && mStrategy == params.mStrategy
+                && Float.compare(mLineSpacingMultiplier, params.mLineSpacingMultiplier) == 0
+                && Float.compare(mLineSpacingExtra, params.mLineSpacingExtra) == 0
+                && mIncludeFontPadding == params.mIncludeFontPadding
+                && mAdvanceTableEnabled == params.mAdvanceTableEnabled
+                && mBreakStrategy == params.mBreakStrategy
+                && mHyphenationFrequency == params.mHyphenationFrequency
+                && mProbeBreakStrategy == params.mProbeBreakStrategy
+                && mProbeHyphenationFrequency == params.mProbeHyphenationFrequency
+                && Arrays.equals(mSizes, params.mSizes);
+    }
+}
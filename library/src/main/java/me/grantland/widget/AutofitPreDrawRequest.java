@@ -0,0 +1,82 @@
+package me.grantland.widget;
+
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Registers an {@link ViewTreeObserver.OnPreDrawListener} to be called before the next frame a
+ * View is drawn in, and follows the View as it is detached and attached again. The listener is
+ * only ever registered with the observer of the window the View is attached to, if any, so that a
+ * View removed while a fit is pending is neither fitted detached nor kept alive by its old
+ * window.
+ */
+final class AutofitPreDrawRequest implements View.OnAttachStateChangeListener {
+
+    private final View mView;
+    private final ViewTreeObserver.OnPreDrawListener mListener;
+    // Observer the listener was added to, or null if it isn't registered
+    private ViewTreeObserver mObserver;
+    private boolean mPending;
+
+    AutofitPreDrawRequest(View view, ViewTreeObserver.OnPreDrawListener listener) {
+        mView = view;
+        mListener = listener;
+    }
+
+    /**
+     * Calls the listener before the next frame the View is drawn in, unless already requested.
+     */
+    void request() {
+        if (mPending) {
+            return;
+        }
+        mPending = true;
+        mView.addOnAttachStateChangeListener(this);
+        register();
+        // Make sure there is a next frame to call the listener before.
+        mView.invalidate();
+    }
+
+    /**
+     * Cancels the pending request, if any.
+     */
+    void cancel() {
+        if (!mPending) {
+            return;
+        }
+        mPending = false;
+        mView.removeOnAttachStateChangeListener(this);
+        unregister();
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+        // A listener added while detached was already moved over with the rest of the View's
+        // observer.
+        if (mPending && mObserver == null) {
+            register();
+        }
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+        // Stays pending, to be registered again with the next window.
+        unregister();
+    }
+
+    private void register() {
+        mObserver = mView.getViewTreeObserver();
+        mObserver.addOnPreDrawListener(mListener);
+    }
+
+    private void unregister() {
+        if (mObserver == null) {
+            return;
+        }
+        // Attaching the View merges the observer it had while detached into the window's, which
+        // leaves the former dead.
+        ViewTreeObserver observer = mObserver.isAlive() ? mObserver : mView.getViewTreeObserver();
+        observer.removeOnPreDrawListener(mListener);
+        mObserver = null;
+    }
+}
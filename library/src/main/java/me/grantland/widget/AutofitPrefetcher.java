@@ -0,0 +1,294 @@
+package me.grantland.widget;
+
+import android.content.res.Resources;
+import android.os.Build;
+import android.text.Spanned;
+import android.text.SpannedString;
+import android.text.TextPaint;
+import android.text.method.TransformationMethod;
+import android.util.DisplayMetrics;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Computes fitted text sizes ahead of time, such as for the items a {@code RecyclerView} is about
+ * to bind, and stores them in an {@link AutofitCache}. An {@link AutofitHelper} that uses the same
+ * cache then finds the size instead of searching for it when the item is bound.
+ *
+ * <pre>
+ * AutofitCache cache = new AutofitCache(500);
+ * AutofitCache.setSharedCache(cache);
+ * AutofitPrefetcher prefetcher = new AutofitPrefetcher(cache, AsyncTask.THREAD_POOL_EXECUTOR);
+ * prefetcher.prefetch(requests);
+ * </pre>
+ */
+public class AutofitPrefetcher {
+
+    private final AutofitCache mCache;
+    private final Executor mExecutor;
+    private final int mParallelism;
+
+    /**
+     * Creates a new {@code AutofitPrefetcher} that computes sizes on {@code executor}, splitting
+     * each batch across as many tasks as there are processors, and stores them in {@code cache}.
+     */
+    public AutofitPrefetcher(AutofitCache cache, Executor executor) {
+        this(cache, executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new {@code AutofitPrefetcher} that computes sizes on {@code executor}, splitting
+     * each batch across at most {@code parallelism} tasks, and stores them in {@code cache}.
+     */
+    public AutofitPrefetcher(AutofitCache cache, Executor executor, int parallelism) {
+        if (cache == null) {
+            throw new IllegalArgumentException("cache == null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor == null");
+        }
+        mCache = cache;
+        mExecutor = executor;
+        mParallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Returns the {@link AutofitCache} the computed sizes are stored in.
+     */
+    public AutofitCache getCache() {
+        return mCache;
+    }
+
+    /**
+     * Computes the fitted sizes of {@code requests} in the background. This returns immediately;
+     * each size is stored in the cache as soon as it has been computed.
+     */
+    public void prefetch(Collection<Request> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        int taskCount = Math.min(mParallelism, requests.size());
+        List<List<Request>> batches = new ArrayList<List<Request>>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            batches.add(new ArrayList<Request>());
+        }
+        int i = 0;
+        for (Request request : requests) {
+            batches.get(i++ % taskCount).add(request);
+        }
+
+        for (List<Request> batch : batches) {
+            mExecutor.execute(new PrefetchTask(batch));
+        }
+    }
+
+    private class PrefetchTask implements Runnable {
+        private final List<Request> mRequests;
+
+        PrefetchTask(List<Request> requests) {
+            mRequests = requests;
+        }
+
+        @Override
+        public void run() {
+            DisplayMetrics displayMetrics = Resources.getSystem().getDisplayMetrics();
+            AutofitMeasurer measurer = new AutofitMeasurer();
+            AutofitCache.Key key = new AutofitCache.Key();
+            TextPaint paint = new TextPaint();
+
+            for (Request request : mRequests) {
+                if (!AutofitCache.isCacheable(request.mText)) {
+                    continue;
+                }
+                paint.set(request.mPaint);
+                key.set(request.mText, paint, request.mParams);
+                float size = AutofitHelper.computeTextSize(request.mText, paint, request.mParams,
+                        displayMetrics, measurer);
+                mCache.put(key, size);
+            }
+        }
+    }
+
+    /**
+     * The inputs of a single fit to prefetch, or to compute with {@link AutofitEngine}. They have
+     * to match what the {@link AutofitHelper} will fit against for the prefetched size to be
+     * found.
+     */
+    public static class Request {
+        final CharSequence mText;
+        final TextPaint mPaint;
+        final AutofitParams mParams = new AutofitParams();
+
+        /**
+         * Creates a new request.
+         *
+         * @param text The text as displayed, after the TextView's transformation method if any.
+         * @param paint A paint with the same typeface, style and other properties as the
+         *              TextView's, such as {@link TextView#getPaint()}. It is copied.
+         * @param width The width available to the text in pixels, excluding padding.
+         * @param maxLines The maximum number of lines.
+         * @param minTextSize The minimum text size in pixels.
+         * @param maxTextSize The maximum text size in pixels.
+         */
+        public Request(CharSequence text, TextPaint paint, int width, int maxLines,
+                float minTextSize, float maxTextSize) {
+            // The text may be mutable, so take a copy that keeps any spans.
+            mText = text instanceof Spanned ? new SpannedString(text) : text.toString();
+            mPaint = new TextPaint(paint);
+            mParams.mTargetWidth = width;
+            // Lines are only unlimited when fitting height, where helpers count them as MAX_VALUE.
+            mParams.mMaxLines = maxLines > 0 ? maxLines : Integer.MAX_VALUE;
+            mParams.mMinTextSize = minTextSize;
+            mParams.mMaxTextSize = maxTextSize;
+            mParams.mPrecision = AutofitHelper.DEFAULT_PRECISION;
+            mParams.mStrategy = AutofitHelper.STRATEGY_SEARCH;
+        }
+
+        /**
+         * Creates a new request for {@code text} with the paint, transformation method and
+         * properties that {@code helper} currently fits against.
+         *
+         * @param width The width available to the text in pixels, excluding padding.
+         */
+        public Request(AutofitHelper helper, CharSequence text, int width) {
+            this(transform(helper.getTextView(), text), helper.getTextView().getPaint(), width,
+                    helper.getMaxLines(), helper.getMinTextSize(), helper.getMaxTextSize());
+            mParams.mPrecision = helper.getPrecision();
+            mParams.mStrategy = helper.getStrategy();
+            mParams.mAdvanceTableEnabled = helper.isAdvanceTableEnabled();
+            setProbeBreakStrategy(helper.getProbeBreakStrategy(),
+                    helper.getProbeHyphenationFrequency());
+            float[] sizes = helper.getSizes();
+            if (sizes != null) {
+                setPresetSizes(sizes);
+            }
+            TextView view = helper.getTextView();
+            if (helper.isFitHeight() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                // getLineSpacingMultiplier(), getLineSpacingExtra() and getIncludeFontPadding()
+                // are only available on android-16+
+                setLineSpacing(view.getLineSpacingMultiplier(), view.getLineSpacingExtra(),
+                        view.getIncludeFontPadding());
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                // getBreakStrategy() and getHyphenationFrequency() are only available on
+                // android-23+
+                setBreakStrategy(view.getBreakStrategy(), view.getHyphenationFrequency());
+            }
+        }
+
+        private static CharSequence transform(TextView view, CharSequence text) {
+            TransformationMethod method = view.getTransformationMethod();
+            if (method != null) {
+                text = method.getTransformation(text, view);
+            }
+            return text;
+        }
+
+        /**
+         * Set the precision the helper uses. Defaults to the helper's default.
+         *
+         * @see AutofitHelper#setPrecision(float)
+         */
+        public Request setPrecision(float precision) {
+            mParams.mPrecision = precision;
+            return this;
+        }
+
+        /**
+         * Set the height available to the text in pixels, excluding padding, for helpers that
+         * {@link AutofitHelper#setFitHeight(boolean) fit height}.
+         */
+        public Request setHeight(int height) {
+            mParams.mTargetHeight = height;
+            return this;
+        }
+
+        /**
+         * Set the line spacing and font padding of the TextView, for helpers that
+         * {@link AutofitHelper#setFitHeight(boolean) fit height}. Requests created from a helper
+         * copy them from its TextView.
+         *
+         * @see TextView#setLineSpacing(float, float)
+         * @see TextView#setIncludeFontPadding(boolean)
+         */
+        public Request setLineSpacing(float multiplier, float extra, boolean includeFontPadding) {
+            mParams.mLineSpacingMultiplier = multiplier;
+            mParams.mLineSpacingExtra = extra;
+            mParams.mIncludeFontPadding = includeFontPadding;
+            return this;
+        }
+
+        /**
+         * Set the strategy the helper uses. Defaults to {@link AutofitHelper#STRATEGY_SEARCH}.
+         *
+         * @see AutofitHelper#setStrategy(int)
+         */
+        public Request setStrategy(int strategy) {
+            mParams.mStrategy = strategy;
+            return this;
+        }
+
+        /**
+         * Set the sizes in pixels the helper may size the text to, sorted in ascending order, for
+         * helpers with a step granularity or preset sizes. This replaces the minimum and maximum
+         * text size, so there must be at least one. Requests created from a helper copy them from
+         * it.
+         *
+         * @see AutofitHelper#setPresetSizes(int, float[])
+         */
+        public Request setPresetSizes(float[] sizes) {
+            if (sizes == null) {
+                throw new IllegalArgumentException("sizes == null");
+            }
+            if (sizes.length == 0) {
+                throw new IllegalArgumentException("sizes is empty");
+            }
+            mParams.mSizes = sizes.clone();
+            mParams.mMinTextSize = sizes[0];
+            mParams.mMaxTextSize = sizes[sizes.length - 1];
+            return this;
+        }
+
+        /**
+         * Set whether the helper takes glyph advances from shared tables. Defaults to
+         * {@code false}.
+         *
+         * @see AutofitHelper#setAdvanceTableEnabled(boolean)
+         */
+        public Request setAdvanceTableEnabled(boolean enabled) {
+            mParams.mAdvanceTableEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Set the break strategy and hyphenation frequency of the TextView. Requests created from
+         * a helper copy them from its TextView.
+         *
+         * @see TextView#setBreakStrategy(int)
+         * @see TextView#setHyphenationFrequency(int)
+         */
+        public Request setBreakStrategy(int breakStrategy, int hyphenationFrequency) {
+            mParams.mBreakStrategy = breakStrategy;
+            mParams.mHyphenationFrequency = hyphenationFrequency;
+            return this;
+        }
+
+        /**
+         * Set the break strategy and hyphenation frequency the helper searches with. Defaults to
+         * the cheapest, {@link android.text.Layout#BREAK_STRATEGY_SIMPLE} without hyphenation.
+         *
+         * @see AutofitHelper#setProbeBreakStrategy(int)
+         * @see AutofitHelper#setProbeHyphenationFrequency(int)
+         */
+        public Request setProbeBreakStrategy(int breakStrategy, int hyphenationFrequency) {
+            mParams.mProbeBreakStrategy = breakStrategy;
+            mParams.mProbeHyphenationFrequency = hyphenationFrequency;
+            return this;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import android.widget.TextView;
  * @attr ref R.styleable.AutofitTextView_sizeToFit
  * @attr ref R.styleable.AutofitTextView_minTextSize
  * @attr ref R.styleable.AutofitTextView_precision
+ * @attr ref R.styleable.AutofitTextView_strategy
  */
 public class AutofitTextView extends TextView implements AutofitHelper.OnTextSizeChangeListener {
 
@@ -185,6 +186,25 @@ public class AutofitTextView extends TextView implements AutofitHelper.OnTextSiz
         mHelper.setPrecision(precision);
     }
 
+    /**
+     * Returns the strategy used to calculate the correct text size to fit within its bounds.
+     */
+    public int getStrategy() {
+        return mHelper.getStrategy();
+    }
+
+    /**
+     * Set the strategy used to calculate the correct text size to fit within its bounds.
+     *
+     * @param strategy One of {@link AutofitHelper#STRATEGY_SEARCH} or
+     *                 {@link AutofitHelper#STRATEGY_LINEAR}.
+     *
+     * @attr ref me.grantland.R.styleable#AutofitTextView_strategy
+     */
+    public void setStrategy(int strategy) {
+        mHelper.setStrategy(strategy);
+    }
+
     @Override
     public void onTextSizeChange(float textSize, float oldTextSize) {
         // do nothing
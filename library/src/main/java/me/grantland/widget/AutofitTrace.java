@@ -0,0 +1,72 @@
+package me.grantland.widget;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Wraps fits in {@link Trace} sections, so that they show up on their own in systrace and Perfetto
+ * captures instead of as part of the layout or text change that triggered them. Each fit is a
+ * section named after its trigger, with a nested section named after its probe count.
+ *
+ * <p>Section names are built once and cached, so tracing doesn't allocate. Sections are only
+ * available on android-18+.</p>
+ */
+final class AutofitTrace {
+
+    private static final String[] TRIGGER_NAMES = { "text", "layout", "property", "group" };
+    private static final String[] SECTIONS = new String[TRIGGER_NAMES.length];
+    private static final String[] ASYNC_SECTIONS = new String[TRIGGER_NAMES.length];
+    static {
+        for (int i = 0; i < TRIGGER_NAMES.length; i++) {
+            SECTIONS[i] = "Autofit " + TRIGGER_NAMES[i];
+            ASYNC_SECTIONS[i] = "Autofit " + TRIGGER_NAMES[i] + " (async)";
+        }
+    }
+
+    // Probe counts above this share a single name.
+    private static final int MAX_PROBE_COUNT = 64;
+    // Built on first use; racing threads at worst build the same name twice.
+    private static final String[] sProbeSections = new String[MAX_PROBE_COUNT + 1];
+
+    private AutofitTrace() {
+        // Uninstantiable
+    }
+
+    /**
+     * Begins the section of a fit with {@code trigger}, one of the {@code TRIGGER_*} constants
+     * of {@link AutofitMetrics}. Must be followed by {@link #endFit(int)} on the same thread.
+     *
+     * @param async Whether the fit is computed on an {@link java.util.concurrent.Executor}.
+     */
+    static void beginFit(int trigger, boolean async) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            // Trace is only available on android-18+
+            Trace.beginSection(async ? ASYNC_SECTIONS[trigger] : SECTIONS[trigger]);
+        }
+    }
+
+    /**
+     * Ends the section of a fit that took {@code probeCount} measurements.
+     */
+    static void endFit(int probeCount) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            // The name of a section is fixed when it begins, so the probe count, which is only
+            // known now, gets an empty section of its own.
+            Trace.beginSection(getProbeSection(probeCount));
+            Trace.endSection();
+            Trace.endSection();
+        }
+    }
+
+    private static String getProbeSection(int probeCount) {
+        if (probeCount > MAX_PROBE_COUNT) {
+            return "Autofit probes>" + MAX_PROBE_COUNT;
+        }
+        String section = sProbeSections[probeCount];
+        if (section == null) {
+            section = "Autofit probes=" + probeCount;
+            sProbeSections[probeCount] = section;
+        }
+        return section;
+    }
+}